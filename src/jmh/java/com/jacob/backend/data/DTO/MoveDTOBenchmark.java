@@ -0,0 +1,35 @@
+package com.jacob.backend.data.DTO;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks of parsing and formatting moves in modified SAN
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MoveDTOBenchmark {
+
+    @Param({ "Pe2e4", "Qh5xh7+", "Ke1d2#" })
+    private String moveString;
+
+    private MoveDTO move;
+
+    @Setup
+    public void setup() {
+        move = MoveDTO.fromString(moveString);
+    }
+
+    @Benchmark
+    public MoveDTO moveFromString() {
+        return MoveDTO.fromString(moveString);
+    }
+
+    @Benchmark
+    public String moveToString() {
+        return move.toString();
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.jacob.backend.responses;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.jacob.backend.data.Model.Game;
+
+/**
+ * Benchmarks of serializing responses to JSON
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JSONResponsesBenchmark {
+
+    private Game game;
+
+    @Setup
+    public void setup() {
+        game = new Game();
+        game.setId(UUID.randomUUID());
+        game.setWhitePlayerUsername("Lasker");
+        game.setBlackPlayerUsername("Thomas");
+        game.setFEN("rn3rk1/pbppq1pp/1p2pb2/4N2Q/3PN3/3B4/PPP2PPP/R3K2R");
+        game.setMoves("d4 e6 Nf3 f5 Nc3 Nf6 Bg5 Be7 Bxf6 Bxf6 " +
+                "e4 fxe4 Nxe4 b6 Ne5 O-O Bd3 Bb7 Qh5 Qe7");
+        game.setMoveTimes("1000 3500 2000 5000 4750 10000 12565 8750 9435 3456 " +
+                "1000 3500 2000 5000 4750 10000 12565 8750 9435 3456");
+    }
+
+    @Benchmark
+    public String toJsonGame() {
+        return JSONResponses.toJson(game);
+    }
+
+}
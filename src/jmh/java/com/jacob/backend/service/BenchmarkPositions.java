@@ -0,0 +1,37 @@
+package com.jacob.backend.service;
+
+/**
+ * Positions shared by the benchmarks, from the opening, middlegame and endgame
+ */
+final class BenchmarkPositions {
+
+    private BenchmarkPositions() {
+    }
+
+    /**
+     * @param name "opening", "middlegame" or "endgame"
+     * @return the FEN of the position
+     */
+    static String fen(String name) {
+        return switch (name) {
+            case "opening" -> "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR";
+            case "middlegame" -> "rn3rk1/pbppq1pp/1p2pb2/4N2Q/3PN3/3B4/PPP2PPP/R3K2R";
+            case "endgame" -> "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8";
+            default -> throw new IllegalArgumentException("Unknown position: " + name);
+        };
+    }
+
+    /**
+     * @param name "opening", "middlegame" or "endgame"
+     * @return the moves leading to the position, in the format Games store them,
+     *         so replaying them sets the castling rights and en passant square
+     */
+    static String[] previousMoves(String name) {
+        return switch (name) {
+            case "middlegame" -> ("Pd2d4 pe7e6 Ng1f3 pf7f5 Nb1c3 ng8f6 Bc1g5 bf8e7 Bg5f6 be7f6 " +
+                    "Pe2e4 pf5e4 Nc3e4 pb7b6 Nf3e5 ke8g8 Bf1d3 bc8b7 Qd1h5 qd8e7").split(" ");
+            default -> new String[] { "" };
+        };
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.jacob.backend.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.jacob.backend.data.DTO.MoveDTO;
+import com.jacob.backend.data.Model.Game;
+import com.jacob.backend.engine.FEN;
+import com.jacob.backend.engine.Position;
+
+/**
+ * Benchmark of validating, performing and annotating a move on a Game
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DoMoveBenchmark {
+
+    private GameService service;
+
+    private Position position;
+
+    private MoveDTO knightMove;
+
+    @Setup
+    public void setup() {
+        service = new GameService();
+        position = FEN.parse(BenchmarkPositions.fen("middlegame"));
+        knightMove = new MoveDTO();
+        knightMove.setPiece("N");
+        knightMove.setStartSquare(new int[] { 4, 4 });
+        knightMove.setDestSquare(new int[] { 6, 3 });
+    }
+
+    /**
+     * Checks a single submitted move in the middlegame position, the way doMove
+     * does before performing it
+     */
+    @Benchmark
+    public boolean isValidMove() {
+        return service.isValidMove(position, knightMove, Position.WHITE);
+    }
+
+    /**
+     * Plays 1. e4 on a new Game. The Game and move are created each time, since
+     * performing the move changes them
+     */
+    @Benchmark
+    public Game doMoveOnGame() {
+
+        Game game = new Game();
+
+        MoveDTO move = new MoveDTO();
+        move.setPiece("P");
+        move.setStartSquare(new int[] { 4, 6 });
+        move.setDestSquare(new int[] { 4, 4 });
+        move.setMiliseconds(1000);
+
+        service.doMoveOnGame(game, move);
+
+        return game;
+
+    }
+
+}
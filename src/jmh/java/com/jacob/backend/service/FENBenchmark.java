@@ -0,0 +1,62 @@
+package com.jacob.backend.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.jacob.backend.engine.FEN;
+import com.jacob.backend.engine.Position;
+
+/**
+ * Benchmarks of converting between FENs, grids and Positions
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FENBenchmark {
+
+    @Param({ "opening", "middlegame", "endgame" })
+    private String position;
+
+    private GameService service;
+
+    private String fen;
+
+    private String[][] grid;
+
+    private Position parsed;
+
+    private StringBuilder builder;
+
+    @Setup
+    public void setup() {
+        service = new GameService();
+        fen = BenchmarkPositions.fen(position);
+        grid = service.FENToGrid(fen);
+        parsed = FEN.parse(fen);
+        builder = new StringBuilder(FEN.MAX_LENGTH);
+    }
+
+    @Benchmark
+    public String[][] FENToGrid() {
+        return service.FENToGrid(fen);
+    }
+
+    @Benchmark
+    public String gridToFEN() {
+        return service.gridToFEN(grid);
+    }
+
+    @Benchmark
+    public Position parse() {
+        return FEN.parse(fen);
+    }
+
+    @Benchmark
+    public StringBuilder write() {
+        builder.setLength(0);
+        FEN.write(parsed, builder);
+        return builder;
+    }
+
+}
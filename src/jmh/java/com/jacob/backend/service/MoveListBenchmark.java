@@ -0,0 +1,63 @@
+package com.jacob.backend.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.jacob.backend.data.DTO.MoveDTO;
+import com.jacob.backend.engine.FEN;
+import com.jacob.backend.engine.IntMoveList;
+import com.jacob.backend.engine.MoveListCodec;
+import com.jacob.backend.engine.Position;
+
+/**
+ * Benchmarks of replaying the moves of a game, from its move list and from its
+ * encoded moves
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MoveListBenchmark {
+
+    private GameService service;
+
+    private String[] moves;
+
+    private byte[] moveData;
+
+    @Setup
+    public void setup() {
+        service = new GameService();
+        moves = ("Pe2e4 pe7e5 Ng1f3 nb8c6 Bf1b5 pa7a6 Bb5a4 ng8f6 Ke1g1 bf8e7 " +
+                "Rf1e1 pb7b5 Ba4b3 pd7d6 Pc2c3 ke8g8 Ph2h3 nc6b8 Pd2d4 nb8d7").split(" ");
+
+        Position position = FEN.parse(FEN.STARTING_POSITION);
+        IntMoveList packedMoves = new IntMoveList();
+        int[] clockMillis = new int[moves.length];
+        for (int ply = 0; ply < moves.length; ply++) {
+            int packedMove = service.toPackedMove(position, MoveDTO.fromString(moves[ply]));
+            position.makeMove(packedMove);
+            packedMoves.add(packedMove);
+            clockMillis[ply] = 1000 + ply * 250;
+        }
+        moveData = MoveListCodec.encode(packedMoves, clockMillis);
+    }
+
+    @Benchmark
+    public Position replayMoveList() {
+        Position position = FEN.parse(FEN.STARTING_POSITION);
+        for (String move : moves) {
+            position.makeMove(service.toPackedMove(position, MoveDTO.fromString(move)));
+        }
+        return position;
+    }
+
+    @Benchmark
+    public Position decode() {
+        Position position = FEN.parse(FEN.STARTING_POSITION);
+        MoveListCodec.decode(moveData, position, (move, clockMillis) -> {
+        });
+        return position;
+    }
+
+}
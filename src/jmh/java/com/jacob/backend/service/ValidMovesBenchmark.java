@@ -0,0 +1,69 @@
+package com.jacob.backend.service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.jacob.backend.engine.FEN;
+import com.jacob.backend.engine.IntMoveList;
+import com.jacob.backend.engine.Position;
+
+/**
+ * Benchmarks of finding the valid moves of white, with and without the valid
+ * moves cache
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ValidMovesBenchmark {
+
+    @Param({ "opening", "middlegame", "endgame" })
+    private String position;
+
+    @Param({ "false", "true" })
+    private boolean includeAnnotations;
+
+    private GameService service;
+
+    private String fen;
+
+    private String[] previousMoves;
+
+    private Position parsed;
+
+    private IntMoveList moves;
+
+    @Setup
+    public void setup() {
+        service = new GameService();
+        fen = BenchmarkPositions.fen(position);
+        previousMoves = BenchmarkPositions.previousMoves(position);
+        parsed = FEN.parse(fen);
+        service.applyMoveHistory(parsed, previousMoves);
+        moves = new IntMoveList();
+    }
+
+    /**
+     * After the first call the moves come from the valid moves cache, so this
+     * measures a cache hit
+     */
+    @Benchmark
+    public List<String> getValidMoves() {
+        return service.getValidMoves(fen, Optional.of(previousMoves), Optional.ofNullable(null),
+                Optional.of("w"), includeAnnotations);
+    }
+
+    /**
+     * Generates the moves without the cache, which is what a cache miss costs
+     */
+    @Benchmark
+    public IntMoveList generateValidMoves() {
+        moves.clear();
+        service.generateValidMoves(parsed, Optional.ofNullable(null), Optional.of("w"), false, includeAnnotations,
+                moves);
+        return moves;
+    }
+
+}
@@ -8,6 +8,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import com.jacob.backend.data.DTO.GamePageDTO;
+import com.jacob.backend.data.DTO.GameSummaryDTO;
 import com.jacob.backend.data.Model.*;
 import com.jacob.backend.responses.JSONResponses;
 import com.jacob.backend.responses.exceptions.NotFoundException;
@@ -94,30 +96,81 @@ public class GameController {
     }
 
     /**
-     * Get all Games that the current User has played
+     * Get the Games in progress of the current User, newest first
      * 
      * @param sessionId the sessionId to identify the current User
-     * @return JSON String with the list of Games if the operation was successful,
-     *         else 4XX
+     * @return JSON String with the Games if the operation was successful, else 4XX
      */
-    @GetMapping
-    public ResponseEntity<String> getGames(@CookieValue(name = "session-id", defaultValue = "") String sessionId) {
+    @GetMapping("/active")
+    public ResponseEntity<String> getActiveGames(
+            @CookieValue(name = "session-id", defaultValue = "") String sessionId) {
         try {
 
             // log the method start
-            log.info(String.format("HTTP request received | URL: '%s', Method: '%s', Data: '%s'", "/games", "GET", ""));
+            log.info(String.format("HTTP request received | URL: '%s', Method: '%s', Data: '%s'", "/games/active",
+                    "GET", ""));
 
             // get the Username - throws Unauthorized
             String username = sessionService.getUsernameById(sessionId);
 
             // perform the Get
-            List<Game> games = gameService.findAllByUsername(username);
+            List<GameSummaryDTO> games = gameService.findActiveByUsername(username);
 
             // log the successful response
             log.info(String.format("HTTP response sent | Data: '%s'", JSONResponses.toJson(games)));
 
             // return successful
-            return ResponseEntity.ok().body(JSONResponses.toJson("games", games));
+            return ResponseEntity.ok().body(JSONResponses.toJson(games));
+
+        } catch (UnauthorizedException e) {
+
+            // log the exception
+            log.error("Failed to get 'Games'", e);
+
+            // catch Unauthorized - return 401
+            return ResponseEntity.status(401).body(JSONResponses.error(e.getMessage()));
+
+        } catch (Exception e) {
+
+            // log the exception
+            log.error("Failed to get 'Games'", e);
+
+            // catch generic Exception - return badRequest
+            return ResponseEntity.badRequest().body(JSONResponses.error(e.getMessage()));
+
+        }
+    }
+
+    /**
+     * Get a page of the Games that the current User has played, newest first
+     * 
+     * @param sessionId the sessionId to identify the current User
+     * @param cursor    the optional cursor returned with the page before
+     * @param limit     the most Games to return
+     * @return JSON String with the page of Games and the cursor of the next page,
+     *         if there is one, if the operation was successful, else 4XX
+     */
+    @GetMapping
+    public ResponseEntity<String> getGames(@CookieValue(name = "session-id", defaultValue = "") String sessionId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit) {
+        try {
+
+            // log the method start
+            log.info(String.format("HTTP request received | URL: '%s', Method: '%s', Data: '%s'", "/games", "GET",
+                    cursor + " " + limit));
+
+            // get the Username - throws Unauthorized
+            String username = sessionService.getUsernameById(sessionId);
+
+            // perform the Get
+            GamePageDTO page = gameService.findPageByUsername(username, Optional.ofNullable(cursor), limit);
+
+            // log the successful response
+            log.info(String.format("HTTP response sent | Data: '%s'", JSONResponses.toJson(page)));
+
+            // return successful
+            return ResponseEntity.ok().body(JSONResponses.toJson(page));
 
         } catch (UnauthorizedException e) {
 
@@ -204,10 +257,12 @@ public class GameController {
     /**
      * Get the current valid moves for the game with the given UUID
      * 
-     * @param sessionId      the session id of the user making the request
-     * @param startingSquare the optional starting square to filter the moves by
-     * @param playerColor    the optional player color to filter the moves by
-     * @param gameId         the UUID of the game for which to get valid moves
+     * @param sessionId          the session id of the user making the request
+     * @param startingSquare     the optional starting square to filter the moves by
+     * @param playerColor        the optional player color to filter the moves by
+     * @param includeAnnotations if the moves should be annotated with captures,
+     *                           checks, and mates, which is much slower
+     * @param gameId             the UUID of the game for which to get valid moves
      * @return a list of valid moves for the given game
      */
     @GetMapping("/{gameId}/validMoves")
@@ -215,6 +270,7 @@ public class GameController {
             @CookieValue(name = "session-id", defaultValue = "") String sessionId,
             @RequestParam(required = false) int[] startingSquare,
             @RequestParam(required = false) String playerColor,
+            @RequestParam(defaultValue = "false") boolean includeAnnotations,
             @PathVariable String gameId) {
         try {
 
@@ -229,7 +285,7 @@ public class GameController {
 
             // Get the validMoves for the given Game and options
             List<String> moves = gameService.getValidMoves(username, gameId, Optional.ofNullable(startingSquare),
-                    Optional.ofNullable(playerColor));
+                    Optional.ofNullable(playerColor), includeAnnotations);
 
             // log the successful response
             log.info(String.format("HTTP response sent | Data: '%s'", JSONResponses.toJson(moves)));
@@ -323,13 +379,15 @@ public class GameController {
     /**
      * Get the valid moves for the given board
      * 
-     * @param sessionId      the session id of the user making the request
-     * @param startingSquare the optional starting square on which to filter the
-     *                       valid moves
-     * @param playerColor    the optional player color on which to filter the valid
-     *                       moves
-     * @param fen            the FEN of the current game state, used to determine
-     *                       what the valid moves are
+     * @param sessionId          the session id of the user making the request
+     * @param startingSquare     the optional starting square on which to filter
+     *                           the valid moves
+     * @param playerColor        the optional player color on which to filter the
+     *                           valid moves
+     * @param includeAnnotations if the moves should be annotated with captures,
+     *                           checks, and mates, which is much slower
+     * @param fen                the FEN of the current game state, used to
+     *                           determine what the valid moves are
      * @return a list of the valid moves for the given game state
      */
     @GetMapping("/board/validMoves")
@@ -337,6 +395,7 @@ public class GameController {
             @CookieValue(name = "session-id", defaultValue = "") String sessionId,
             @RequestParam(required = false) int[] startingSquare,
             @RequestParam(required = false) String playerColor,
+            @RequestParam(defaultValue = "false") boolean includeAnnotations,
             @RequestParam String fen) {
         try {
 
@@ -348,7 +407,7 @@ public class GameController {
 
             // get the list of valid moves
             List<String> moves = gameService.getValidMoves(fen, Optional.ofNullable(null),
-                    Optional.ofNullable(startingSquare), Optional.ofNullable(playerColor));
+                    Optional.ofNullable(startingSquare), Optional.ofNullable(playerColor), includeAnnotations);
 
             // log the successful response
             log.info("HTTP response sent | Status: 200");
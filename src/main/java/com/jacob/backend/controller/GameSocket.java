@@ -51,11 +51,8 @@ public class GameSocket {
                     "/game/" + gameId,
                     JSONResponses.toJson(move)));
 
-            // perform the move
-            gameService.doMove(move.getPlayerUsername(), gameId, move);
-
-            // get the new state of the game
-            Game game = gameService.findById(UUID.fromString(gameId));
+            // perform the move, getting the new state of the game
+            Game game = gameService.doMove(move.getPlayerUsername(), gameId, move);
 
             // send the game to the other users
             messaging.convertAndSend("/topic/game/" + gameId, game);
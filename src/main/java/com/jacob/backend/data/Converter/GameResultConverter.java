@@ -0,0 +1,57 @@
+package com.jacob.backend.data.Converter;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Stores the result of a Game as a smallint instead of a string:
+ * <ul>
+ * <li>0: '*', the Game is in progress</li>
+ * <li>1: '1-0', white won</li>
+ * <li>2: '0-1', black won</li>
+ * <li>3: '1/2-1/2', a draw</li>
+ * </ul>
+ */
+@Converter
+public class GameResultConverter implements AttributeConverter<String, Short> {
+
+    /**
+     * the results, in the order of their stored codes
+     */
+    private static final String[] RESULTS = { "*", "1-0", "0-1", "1/2-1/2" };
+
+    @Override
+    public Short convertToDatabaseColumn(String result) {
+        if (result == null) {
+            return null;
+        }
+        for (short code = 0; code < RESULTS.length; code++) {
+            if (RESULTS[code].equals(result)) {
+                return code;
+            }
+        }
+        throw new IllegalArgumentException("Invalid game result: " + result);
+    }
+
+    @Override
+    public String convertToEntityAttribute(Short code) {
+        return toResult(code);
+    }
+
+    /**
+     * Reads a stored result, for queries that don't go through the Game entity
+     * 
+     * @param code the stored code of the result
+     * @return the result, e.g. '1-0', or null if the code is null
+     */
+    public static String toResult(Short code) {
+        if (code == null) {
+            return null;
+        }
+        if (code < 0 || code >= RESULTS.length) {
+            throw new IllegalArgumentException("Invalid game result code: " + code);
+        }
+        return RESULTS[code];
+    }
+
+}
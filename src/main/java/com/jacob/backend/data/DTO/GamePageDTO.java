@@ -0,0 +1,58 @@
+package com.jacob.backend.data.DTO;
+
+import java.util.List;
+
+public class GamePageDTO {
+
+    // region variables
+
+    /**
+     * the summaries of the Games on this page, newest first
+     */
+    private List<GameSummaryDTO> games;
+
+    /**
+     * the cursor to get the next page with, or null if this is the last page
+     */
+    private String nextCursor;
+
+    // endregion
+
+    /**
+     * Creates a new GamePageDTO object
+     */
+    public GamePageDTO() {
+    }
+
+    /**
+     * Creates a new GamePageDTO object
+     *
+     * @param games      the summaries of the Games on the page, newest first
+     * @param nextCursor the cursor of the next page, or null if there is none
+     */
+    public GamePageDTO(List<GameSummaryDTO> games, String nextCursor) {
+        this.games = games;
+        this.nextCursor = nextCursor;
+    }
+
+    // region getters/setters
+
+    public List<GameSummaryDTO> getGames() {
+        return games;
+    }
+
+    public void setGames(List<GameSummaryDTO> games) {
+        this.games = games;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    // endregion
+
+}
@@ -0,0 +1,104 @@
+package com.jacob.backend.data.DTO;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * A read-only summary of a Game for listing, without its position or moves
+ */
+public class GameSummaryDTO {
+
+    // region variables
+
+    /**
+     * the UUID identifying the Game
+     */
+    private UUID id;
+
+    /**
+     * the username of the white player
+     */
+    private String whitePlayerUsername;
+
+    /**
+     * the username of the black player
+     */
+    private String blackPlayerUsername;
+
+    /**
+     * the result of the Game, or '*' if it is in progress
+     */
+    private String result;
+
+    /**
+     * the time format of the Game, e.g. '10/5'
+     */
+    private String timeControl;
+
+    /**
+     * the date the Game was created
+     */
+    private Date date;
+
+    /**
+     * the number of plies played, or null if the Game predates keeping it
+     */
+    private Integer plyCount;
+
+    // endregion
+
+    /**
+     * Creates a new GameSummaryDTO object
+     *
+     * @param id                  the UUID of the Game
+     * @param whitePlayerUsername the username of the white player
+     * @param blackPlayerUsername the username of the black player
+     * @param result              the result of the Game
+     * @param timeControl         the time format of the Game
+     * @param date                the date the Game was created
+     * @param plyCount            the number of plies played
+     */
+    public GameSummaryDTO(UUID id, String whitePlayerUsername, String blackPlayerUsername, String result,
+            String timeControl, Date date, Integer plyCount) {
+        this.id = id;
+        this.whitePlayerUsername = whitePlayerUsername;
+        this.blackPlayerUsername = blackPlayerUsername;
+        this.result = result;
+        this.timeControl = timeControl;
+        this.date = date;
+        this.plyCount = plyCount;
+    }
+
+    // region getters
+
+    public UUID getId() {
+        return id;
+    }
+
+    public String getWhitePlayerUsername() {
+        return whitePlayerUsername;
+    }
+
+    public String getBlackPlayerUsername() {
+        return blackPlayerUsername;
+    }
+
+    public String getResult() {
+        return result;
+    }
+
+    public String getTimeControl() {
+        return timeControl;
+    }
+
+    public Date getDate() {
+        return date;
+    }
+
+    public Integer getPlyCount() {
+        return plyCount;
+    }
+
+    // endregion
+
+}
@@ -1,5 +1,9 @@
 package com.jacob.backend.data.DTO;
 
+import com.jacob.backend.engine.Bitboards;
+import com.jacob.backend.engine.Move;
+import com.jacob.backend.engine.Position;
+
 public class MoveDTO {
 
     // region variables
@@ -277,6 +281,36 @@ public class MoveDTO {
         return move;
     }
 
+    /**
+     * Creates a MoveDTO from a move packed by the engine. The capture and
+     * annotations are only set if the packed move has been annotated
+     * 
+     * @param packedMove the packed {@link Move}
+     * @return the MoveDTO describing the same move
+     */
+    public static MoveDTO fromMove(int packedMove) {
+
+        MoveDTO move = new MoveDTO();
+
+        int from = Move.from(packedMove), to = Move.to(packedMove);
+
+        move.setPiece(String.valueOf(Position.charOf(Move.piece(packedMove))));
+        move.setStartSquare(new int[] { Bitboards.x(from), Bitboards.y(from) });
+        move.setDestSquare(new int[] { Bitboards.x(to), Bitboards.y(to) });
+        if (Move.promotion(packedMove) != Position.NO_PIECE) {
+            move.setPromotion(String.valueOf(Position.charOf(Move.promotion(packedMove))));
+        }
+        if (Move.hasFlag(packedMove, Move.ANNOTATED)) {
+            move.setIsCapture(Move.isCapture(packedMove));
+            move.setIsCheck(Move.hasFlag(packedMove, Move.CHECK));
+            move.setIsMate(Move.hasFlag(packedMove, Move.MATE));
+            move.setIsStalemate(Move.hasFlag(packedMove, Move.STALEMATE));
+        }
+
+        return move;
+
+    }
+
     public static MoveDTO fromString(String moveString) {
 
         MoveDTO move = new MoveDTO();
@@ -0,0 +1,95 @@
+package com.jacob.backend.data.DTO;
+
+import java.util.Map;
+
+public class PerftDTO {
+
+    // region variables
+
+    /**
+     * the FEN of the position the move tree was counted from
+     */
+    private String fen;
+
+    /**
+     * the number of plies that were searched
+     */
+    private int depth;
+
+    /**
+     * the number of leaf nodes of the move tree
+     */
+    private long nodes;
+
+    /**
+     * if divided, the number of leaf nodes below each valid move of the position
+     */
+    private Map<String, Long> divide;
+
+    /**
+     * how long the count took in nanoseconds
+     */
+    private long nanoseconds;
+
+    // endregion
+
+    /**
+     * Creates a new PerftDTO object
+     */
+    public PerftDTO() {
+    }
+
+    // region getters/setters
+
+    public String getFen() {
+        return fen;
+    }
+
+    public void setFen(String fen) {
+        this.fen = fen;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public void setNodes(long nodes) {
+        this.nodes = nodes;
+    }
+
+    public Map<String, Long> getDivide() {
+        return divide;
+    }
+
+    public void setDivide(Map<String, Long> divide) {
+        this.divide = divide;
+    }
+
+    public long getNanoseconds() {
+        return nanoseconds;
+    }
+
+    public void setNanoseconds(long nanoseconds) {
+        this.nanoseconds = nanoseconds;
+    }
+
+    /**
+     * Gets how many nodes were counted per second
+     * 
+     * @return the nodes per second, or 0 if no time was measured
+     */
+    public long getNodesPerSecond() {
+        return nanoseconds > 0 ? nodes * 1_000_000_000L / nanoseconds : 0;
+    }
+
+    // endregion
+
+}
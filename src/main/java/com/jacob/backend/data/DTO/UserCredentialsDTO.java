@@ -0,0 +1,58 @@
+package com.jacob.backend.data.DTO;
+
+import java.util.UUID;
+
+/**
+ * The stored credentials of a User, as read when logging in
+ */
+public class UserCredentialsDTO {
+
+    // region variables
+
+    /**
+     * the UUID identifying the User
+     */
+    private UUID id;
+
+    /**
+     * the hash of the User's salted password
+     */
+    private String passwordHash;
+
+    /**
+     * the salt appended to the User's password before hashing
+     */
+    private String passwordSalt;
+
+    // endregion
+
+    /**
+     * Creates a new UserCredentialsDTO object
+     *
+     * @param id           the UUID of the User
+     * @param passwordHash the hash of the User's salted password
+     * @param passwordSalt the salt of the User's password
+     */
+    public UserCredentialsDTO(UUID id, String passwordHash, String passwordSalt) {
+        this.id = id;
+        this.passwordHash = passwordHash;
+        this.passwordSalt = passwordSalt;
+    }
+
+    // region getters
+
+    public UUID getId() {
+        return id;
+    }
+
+    public String getPasswordHash() {
+        return passwordHash;
+    }
+
+    public String getPasswordSalt() {
+        return passwordSalt;
+    }
+
+    // endregion
+
+}
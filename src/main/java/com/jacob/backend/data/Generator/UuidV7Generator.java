@@ -0,0 +1,81 @@
+package com.jacob.backend.data.Generator;
+
+import java.security.SecureRandom;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+
+/**
+ * Generates time-ordered, version 7 UUIDs. Each holds, from the most
+ * significant bit:
+ * <ul>
+ * <li>48 bits: the milliseconds since the epoch</li>
+ * <li>4 bits: the version, 7</li>
+ * <li>12 bits: a counter, so that UUIDs made in the same millisecond still
+ * increase</li>
+ * <li>2 bits: the variant</li>
+ * <li>62 bits: random</li>
+ * </ul>
+ * Since each UUID sorts after the one before, new rows are added at the end of
+ * a B-tree index instead of anywhere in it
+ */
+public class UuidV7Generator implements IdentifierGenerator {
+
+    // #region constants
+
+    private static final int COUNTER_BITS = 12;
+    private static final long COUNTER_MASK = (1L << COUNTER_BITS) - 1;
+    private static final long VERSION = 7L << COUNTER_BITS;
+    private static final long VARIANT = 0x8000000000000000L;
+    private static final long RANDOM_MASK = 0x3FFFFFFFFFFFFFFFL;
+
+    // #endregion
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * the timestamp and counter of the last UUID made, as the timestamp shifted
+     * left past the counter
+     */
+    private static final AtomicLong LAST = new AtomicLong();
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        return next();
+    }
+
+    /**
+     * @return a new UUID, greater than any made before it by this process
+     */
+    public static UUID next() {
+
+        long now = System.currentTimeMillis() << COUNTER_BITS;
+
+        // if the clock hasn't moved on, or has gone back, count up from the last
+        // UUID instead, running into the next millisecond if the counter is full
+        long current = LAST.updateAndGet(last -> Math.max(now, last + 1));
+
+        long timestamp = current >>> COUNTER_BITS;
+        long mostSigBits = timestamp << 16 | VERSION | (current & COUNTER_MASK);
+        long leastSigBits = VARIANT | (RANDOM.nextLong() & RANDOM_MASK);
+
+        return new UUID(mostSigBits, leastSigBits);
+
+    }
+
+    /**
+     * @param uuid a UUID
+     * @return when the UUID was made, to the millisecond, or null if it isn't a
+     *         version 7 UUID
+     */
+    public static Date dateOf(UUID uuid) {
+        if (uuid.version() != 7) {
+            return null;
+        }
+        return new Date(uuid.getMostSignificantBits() >>> 16);
+    }
+
+}
@@ -2,8 +2,9 @@ package com.jacob.backend.data.Model;
 
 import java.util.UUID;
 
+import com.jacob.backend.data.Generator.UuidV7;
+
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
 
@@ -12,7 +13,7 @@ import jakarta.persistence.Table;
 public class Friend {
 
     @Id
-    @GeneratedValue
+    @UuidV7
     private UUID id;
 
     private UUID userAId;
@@ -3,21 +3,30 @@ package com.jacob.backend.data.Model;
 import java.util.Date;
 import java.util.UUID;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.jacob.backend.data.Converter.GameResultConverter;
+import com.jacob.backend.data.Generator.UuidV7;
+
 import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PostLoad;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 
 @Entity
-@Table(name = "games")
+@Table(name = "games", indexes = {
+        @Index(name = "games_white_player_date_idx", columnList = "white_player_id, date, id"),
+        @Index(name = "games_black_player_date_idx", columnList = "black_player_id, date, id") })
 public class Game {
 
     /**
      * The UUID identifying this Game
      */
     @Id
-    @GeneratedValue
+    @UuidV7
     private UUID id;
 
     /**
@@ -26,17 +35,72 @@ public class Game {
     private String fen;
 
     /**
-     * A space delimited list of moves in SAN format
+     * The Zobrist hash of the current position, including the side to move,
+     * castling rights and en passant file
+     */
+    private Long zobristKey;
+
+    /**
+     * The castling rights still held, a combination of the Position castling
+     * constants. Null until the Game is created, or if it was saved before they
+     * were kept, in which case they are worked out from the moves
+     */
+    private Integer castlingRights;
+
+    /**
+     * The square a pawn skipped over with the last move, or -1 if there is none
+     */
+    private Integer enPassantSquare;
+
+    /**
+     * The number of plies since the last capture or pawn move
+     */
+    private Integer halfmoveClock;
+
+    /**
+     * The number of plies played
      */
-    @Column(length = 1337)
+    private Integer plyCount;
+
+    /**
+     * A space delimited list of moves in SAN format. Not stored on the Game row,
+     * but read from its {@link GameMove GameMoves}
+     */
+    @Transient
     private String moves;
 
     /**
-     * A space delimited list of how many miliseconds each move took
+     * A space delimited list of how many miliseconds each move took. Not stored on
+     * the Game row, but read from its {@link GameMove GameMoves}
      */
-    @Column(length = 1337)
+    @Transient
     private String moveTimes;
 
+    /**
+     * The moves of a Game saved before they were kept as GameMoves, which are read
+     * but never written
+     */
+    @JsonIgnore
+    @Column(name = "moves", length = 1337, insertable = false, updatable = false)
+    private String legacyMoves;
+
+    /**
+     * The move times of a Game saved before they were kept as GameMoves, which are
+     * read but never written
+     */
+    @JsonIgnore
+    @Column(name = "move_times", length = 1337, insertable = false, updatable = false)
+    private String legacyMoveTimes;
+
+    /**
+     * The moves and move times of a finished Game, encoded by
+     * {@link com.jacob.backend.engine.MoveListCodec}. Null while the Game is in
+     * progress, or if its moves couldn't be encoded
+     */
+    @JsonIgnore
+    @Column(name = "move_data", columnDefinition = "bytea")
+    private byte[] moveData;
+
     /**
      * The time format of this Game. Of the format [initialMinutes/increment]:
      * e.g. '10/5', meaning both players get 10 minutes to start and the clock has a
@@ -69,15 +133,24 @@ public class Game {
      * got and the number of points the black player got separated by a hyphen if
      * the Game is over. e.g. '1-0', '1/2-1/2', or '0-1'
      * 
-     * If the Game is not over then it will be '*'
+     * If the Game is not over then it will be '*'. Stored as a smallint
      */
+    @Convert(converter = GameResultConverter.class)
     private String result;
 
     /**
      * The date which the Game was created
      */
+    @Column(nullable = false, columnDefinition = "timestamptz")
     private Date date;
 
+    /**
+     * The date which the Game ended, or null if it is in progress. Games that
+     * ended long enough ago are moved to the archive
+     */
+    @Column(columnDefinition = "timestamptz")
+    private Date finishedAt;
+
     /**
      * Created a new Game object
      */
@@ -89,6 +162,45 @@ public class Game {
         fen = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR";
     }
 
+    /**
+     * Creates a copy of the given Game, e.g. so its current state can be written
+     * while moves keep changing the original
+     * 
+     * @param game the Game to copy
+     */
+    public Game(Game game) {
+        id = game.id;
+        fen = game.fen;
+        zobristKey = game.zobristKey;
+        castlingRights = game.castlingRights;
+        enPassantSquare = game.enPassantSquare;
+        halfmoveClock = game.halfmoveClock;
+        plyCount = game.plyCount;
+        moves = game.moves;
+        moveTimes = game.moveTimes;
+        legacyMoves = game.legacyMoves;
+        legacyMoveTimes = game.legacyMoveTimes;
+        moveData = game.moveData;
+        timeControl = game.timeControl;
+        whitePlayerId = game.whitePlayerId;
+        blackPlayerId = game.blackPlayerId;
+        whitePlayerUsername = game.whitePlayerUsername;
+        blackPlayerUsername = game.blackPlayerUsername;
+        result = game.result;
+        date = game.date;
+        finishedAt = game.finishedAt;
+    }
+
+    /**
+     * Starts the moves of a loaded Game from those stored on its row, for Games
+     * saved before they were kept as GameMoves. Its GameMoves then follow them
+     */
+    @PostLoad
+    private void loadLegacyMoves() {
+        moves = legacyMoves != null ? legacyMoves : "";
+        moveTimes = legacyMoveTimes != null ? legacyMoveTimes : "";
+    }
+
     // #region getters/setters
 
     /**
@@ -123,6 +235,87 @@ public class Game {
         this.fen = fen;
     }
 
+    /**
+     * @return The Zobrist hash of the current position of this Game
+     */
+    public Long getZobristKey() {
+        return zobristKey;
+    }
+
+    /**
+     * Updates the Zobrist hash of the current position of this Game
+     * 
+     * @param zobristKey the new hash to store
+     */
+    public void setZobristKey(Long zobristKey) {
+        this.zobristKey = zobristKey;
+    }
+
+    /**
+     * @return The castling rights still held, or null if they weren't kept when
+     *         this Game was saved
+     */
+    public Integer getCastlingRights() {
+        return castlingRights;
+    }
+
+    /**
+     * Updates the castling rights still held
+     * 
+     * @param castlingRights the new castling rights
+     */
+    public void setCastlingRights(Integer castlingRights) {
+        this.castlingRights = castlingRights;
+    }
+
+    /**
+     * @return The square a pawn skipped over with the last move, or -1
+     */
+    public Integer getEnPassantSquare() {
+        return enPassantSquare;
+    }
+
+    /**
+     * Updates the square a pawn skipped over with the last move
+     * 
+     * @param enPassantSquare the new en passant square, or -1
+     */
+    public void setEnPassantSquare(Integer enPassantSquare) {
+        this.enPassantSquare = enPassantSquare;
+    }
+
+    /**
+     * @return The number of plies since the last capture or pawn move
+     */
+    public Integer getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    /**
+     * Updates the number of plies since the last capture or pawn move
+     * 
+     * @param halfmoveClock the new halfmove clock
+     */
+    public void setHalfmoveClock(Integer halfmoveClock) {
+        this.halfmoveClock = halfmoveClock;
+    }
+
+    /**
+     * @return The number of plies played
+     */
+    public Integer getPlyCount() {
+        return plyCount;
+    }
+
+    /**
+     * Updates the number of plies played
+     * 
+     * @param plyCount the new ply count
+     */
+    public void setPlyCount(Integer plyCount) {
+        this.plyCount = plyCount;
+    }
+
     /**
      * Gets the moves of this Game as a space delimited list of SAN formatted moves
      * 
@@ -159,6 +352,24 @@ public class Game {
         this.moveTimes = moveTimes;
     }
 
+    /**
+     * @return the encoded moves and move times of the Game, or null if it hasn't
+     *         finished
+     */
+    public byte[] getMoveData() {
+        return moveData;
+    }
+
+    /**
+     * Updates the encoded moves and move times of this Game
+     * 
+     * @param moveData the moves and move times, encoded by
+     *                 {@link com.jacob.backend.engine.MoveListCodec}
+     */
+    public void setMoveData(byte[] moveData) {
+        this.moveData = moveData;
+    }
+
     /**
      * @return the time format of the Game, in the format
      *         [initialMinutes/increment].
@@ -209,6 +420,22 @@ public class Game {
         this.date = date;
     }
 
+    /**
+     * @return the date this game ended, or null if it is in progress
+     */
+    public Date getFinishedAt() {
+        return finishedAt;
+    }
+
+    /**
+     * Updates the date this game ended
+     * 
+     * @param finishedAt the new Date to store
+     */
+    public void setFinishedAt(Date finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
     /**
      * @return the UUID of the white player
      */
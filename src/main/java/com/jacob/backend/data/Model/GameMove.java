@@ -0,0 +1,95 @@
+package com.jacob.backend.data.Model;
+
+import java.util.UUID;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+
+/**
+ * One ply of a Game. Plies are only ever appended, so a move never rewrites the
+ * ones before it, and a Game's moves are read back in order by a range scan of
+ * the primary key
+ */
+@Entity
+@Table(name = "game_moves")
+@IdClass(GameMoveId.class)
+public class GameMove {
+
+    /**
+     * The UUID of the Game the move was played in
+     */
+    @Id
+    private UUID gameId;
+
+    /**
+     * The number of plies played before this one, starting at 0
+     */
+    @Id
+    private int ply;
+
+    /**
+     * The move, packed and annotated as by {@link com.jacob.backend.engine.Move}
+     */
+    private int move;
+
+    /**
+     * How many miliseconds the move took
+     */
+    private int clockMillis;
+
+    /**
+     * Creates a new GameMove object
+     */
+    public GameMove() {
+    }
+
+    /**
+     * Creates a new GameMove object
+     * 
+     * @param gameId      the UUID of the Game the move was played in
+     * @param ply         the number of plies played before this one
+     * @param move        the packed, annotated move
+     * @param clockMillis how many miliseconds the move took
+     */
+    public GameMove(UUID gameId, int ply, int move, int clockMillis) {
+        this.gameId = gameId;
+        this.ply = ply;
+        this.move = move;
+        this.clockMillis = clockMillis;
+    }
+
+    // #region getters/setters
+
+    /**
+     * @return The UUID of the Game the move was played in
+     */
+    public UUID getGameId() {
+        return gameId;
+    }
+
+    /**
+     * @return The number of plies played before this one
+     */
+    public int getPly() {
+        return ply;
+    }
+
+    /**
+     * @return The packed, annotated move
+     */
+    public int getMove() {
+        return move;
+    }
+
+    /**
+     * @return How many miliseconds the move took
+     */
+    public int getClockMillis() {
+        return clockMillis;
+    }
+
+    // #endregion
+
+}
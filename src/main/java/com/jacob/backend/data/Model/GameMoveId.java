@@ -0,0 +1,41 @@
+package com.jacob.backend.data.Model;
+
+import java.io.Serializable;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * The primary key of a {@link GameMove}: its Game, then its ply
+ */
+public class GameMoveId implements Serializable {
+
+    private UUID gameId;
+
+    private int ply;
+
+    public GameMoveId() {
+    }
+
+    public GameMoveId(UUID gameId, int ply) {
+        this.gameId = gameId;
+        this.ply = ply;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof GameMoveId)) {
+            return false;
+        }
+        GameMoveId other = (GameMoveId) o;
+        return ply == other.ply && Objects.equals(gameId, other.gameId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(gameId, ply);
+    }
+
+}
@@ -2,17 +2,19 @@ package com.jacob.backend.data.Model;
 
 import java.util.UUID;
 
+import com.jacob.backend.data.Generator.UuidV7;
+
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 
 @Entity
-@Table(name = "sessions")
+@Table(name = "sessions", uniqueConstraints = @UniqueConstraint(name = "sessions_username_key", columnNames = "username"))
 public class Session {
 
     @Id
-    @GeneratedValue
+    @UuidV7
     private UUID id;
 
     private String username;
@@ -2,21 +2,43 @@ package com.jacob.backend.data.Model;
 
 import java.util.UUID;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+
+import com.jacob.backend.data.Generator.UuidV7;
+
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
 import jakarta.persistence.NamedQuery;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", uniqueConstraints = @UniqueConstraint(name = "users_username_key", columnNames = "username"))
 @NamedQuery(name = "getAllUsers", query = "SELECT u FROM User u")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = User.CACHE_REGION)
+@NaturalIdCache(region = User.CACHE_REGION)
 public class User {
 
+    /**
+     * The second-level cache region holding Users, by UUID and by username
+     */
+    public static final String CACHE_REGION = "users";
+
     @Id
-    @GeneratedValue
+    @UuidV7
     private UUID id;
 
+    /**
+     * The username, which Users are looked up by. It can be changed, in which
+     * case the cached lookup of the old username is replaced when the change is
+     * committed
+     */
+    @NaturalId(mutable = true)
     private String username;
 
     private String email;
@@ -0,0 +1,338 @@
+package com.jacob.backend.engine;
+
+/**
+ * Precomputed attack tables and helpers for 64-bit board masks.
+ *
+ * Squares are indexed as {@code y * 8 + x}, using the same (x, y) coordinates
+ * as the rest of the backend: the origin is the top-left square (a8), x grows
+ * towards the h-file and y grows towards the first rank
+ */
+public final class Bitboards {
+
+    /**
+     * Mask of every square on the a-file
+     */
+    public static final long FILE_A = 0x0101010101010101L;
+
+    /**
+     * Mask of every square on the h-file
+     */
+    public static final long FILE_H = FILE_A << 7;
+
+    /**
+     * The squares attacked by a knight standing on each square
+     */
+    public static final long[] KNIGHT_ATTACKS = new long[64];
+
+    /**
+     * The squares attacked by a king standing on each square
+     */
+    public static final long[] KING_ATTACKS = new long[64];
+
+    /**
+     * The squares attacked by a pawn of each color standing on each square,
+     * indexed as {@code PAWN_ATTACKS[color][square]}
+     */
+    public static final long[][] PAWN_ATTACKS = new long[2][64];
+
+    /**
+     * The squares strictly between two squares on a shared rank, file or
+     * diagonal, indexed as {@code BETWEEN[from][to]}. Empty if they aren't
+     * aligned
+     */
+    public static final long[][] BETWEEN = new long[64][64];
+
+    /**
+     * The whole rank, file or diagonal through two aligned squares, edge to
+     * edge, indexed as {@code LINE[from][to]}. Empty if they aren't aligned
+     */
+    public static final long[][] LINE = new long[64][64];
+
+    /**
+     * The squares whose occupancy affects a rook's attacks from each square:
+     * every ray square except the board edge it ends on
+     */
+    private static final long[] ROOK_MASKS = new long[64];
+
+    /**
+     * The squares whose occupancy affects a bishop's attacks from each square
+     */
+    private static final long[] BISHOP_MASKS = new long[64];
+
+    /**
+     * The multipliers hashing each square's masked occupancy into its attack
+     * table without harmful collisions. They were found by a seeded random
+     * search over sparse candidates, and are verified when the tables are built
+     */
+    private static final long[] ROOK_MAGICS = {
+            0x7080024000108620L, 0x0040200010004000L, 0x0100081020004500L, 0x3880048110000801L,
+            0x4200200200080410L, 0x2400900400082002L, 0x45000B000F860004L, 0x220004038040A116L,
+            0x010280002084400AL, 0x0026402004401000L, 0x0045002002110048L, 0x0043002300100009L,
+            0x004280801C002800L, 0x4001800401801200L, 0x0022000438A20001L, 0x408100120040A100L,
+            0x0160808000401020L, 0x0020004008205000L, 0x0000430010200300L, 0x4001818008005000L,
+            0x1D04008008008004L, 0x6002080110204004L, 0x2009040001081002L, 0x8094020020804401L,
+            0x00C00049800080A7L, 0x80015000C0002000L, 0xC000220200108040L, 0x00A8018480100108L,
+            0x0108000880800400L, 0x0A00040080020080L, 0x1A01080400104A31L, 0x000200A200011044L,
+            0x4080006001400040L, 0x240080400C802000L, 0x880500104100200AL, 0x0000080284801000L,
+            0x0900800800800401L, 0x5002018402001008L, 0x0000488104001002L, 0x8402048862000411L,
+            0x0000802040008000L, 0x2C20500020004000L, 0x001A004080120020L, 0x80800A0040220010L,
+            0x0204008008008004L, 0x1218020004008080L, 0x0140025118040050L, 0x0824030C40820024L,
+            0x0040220081005200L, 0x0040004421108300L, 0x4420041001208480L, 0x0862082010420200L,
+            0x0D02001861100E00L, 0x8126001008040200L, 0x0064110218D00400L, 0x0427000482284100L,
+            0x0000108040220102L, 0x0000804020160102L, 0x0000400812008022L, 0x0000050010002009L,
+            0x0102001108604402L, 0x1002000110844802L, 0x0401001200440781L, 0x0281000045802203L };
+
+    private static final long[] BISHOP_MAGICS = {
+            0x0420420088048088L, 0x0020A242184102C0L, 0x4208084043861180L, 0x0054251201004000L,
+            0x0844050400005004L, 0x0515042044040004L, 0x4021010802404004L, 0x3000940488081800L,
+            0x0000C00401020208L, 0x01022011112A0884L, 0x0D80100440404000L, 0x0520044040800400L,
+            0x8444020210002040L, 0x8008028820180200L, 0x0180040A01300800L, 0x0000842208048480L,
+            0x0910004004083084L, 0x00081802B8010420L, 0x00140428004C0008L, 0x0008000682004610L,
+            0x0100820400E00200L, 0x000B000811089000L, 0x4812024401240200L, 0x820040103A080404L,
+            0x8024100422200120L, 0x001030B40C234604L, 0x0020480044002400L, 0x0040040085101020L,
+            0x0040840105802000L, 0x4210010000241101L, 0x1202040200410802L, 0x4040608000420802L,
+            0x0218048401512000L, 0xE008080200090202L, 0x8004060110180040L, 0x0000A00800150104L,
+            0x1C01020400020500L, 0x0001080A00002206L, 0x8012040860140204L, 0x010C004202044329L,
+            0x1084108288091031L, 0x4084046202002800L, 0x2001004232001002L, 0x2000104208000080L,
+            0x2108200414000040L, 0x0001200089010A81L, 0x3219A20492004400L, 0x0010148107010148L,
+            0x4402080402080080L, 0x4210844118600100L, 0x4800050401040410L, 0x0800006020880010L,
+            0x30080020020C80C0L, 0x02C446040806040CL, 0x0010021001021044L, 0x4002182801015202L,
+            0x0409820800A2080AL, 0x004000C608050808L, 0x0800008044040412L, 0x0410010280840408L,
+            0x1210A02012420200L, 0x8302400404084200L, 0x020090042840C400L, 0x0808100088004086L };
+
+    /**
+     * The right shift applied to each hashed occupancy, 64 minus the number of
+     * relevant squares
+     */
+    private static final int[] ROOK_SHIFTS = new int[64];
+
+    private static final int[] BISHOP_SHIFTS = new int[64];
+
+    /**
+     * The precomputed attacks for every relevant occupancy of each square,
+     * indexed as {@code ROOK_TABLE[square][magicIndex]}
+     */
+    private static final long[][] ROOK_TABLE = new long[64][];
+
+    private static final long[][] BISHOP_TABLE = new long[64][];
+
+    /**
+     * The (x, y) increments of each rook direction
+     */
+    private static final int[][] ROOK_DIRECTIONS = { { 0, 1 }, { 0, -1 }, { 1, 0 }, { -1, 0 } };
+
+    /**
+     * The (x, y) increments of each bishop direction
+     */
+    private static final int[][] BISHOP_DIRECTIONS = { { 1, 1 }, { -1, -1 }, { 1, -1 }, { -1, 1 } };
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            KNIGHT_ATTACKS[square] = stepAttacks(square, new int[][] {
+                    { -1, 2 }, { -1, -2 }, { -2, 1 }, { -2, -1 }, { 1, 2 }, { 1, -2 }, { 2, 1 }, { 2, -1 } });
+            KING_ATTACKS[square] = stepAttacks(square, new int[][] {
+                    { 1, 1 }, { -1, -1 }, { 1, -1 }, { -1, 1 }, { -1, 0 }, { 0, -1 }, { 1, 0 }, { 0, 1 } });
+            PAWN_ATTACKS[Position.WHITE][square] = stepAttacks(square, new int[][] { { 1, -1 }, { -1, -1 } });
+            PAWN_ATTACKS[Position.BLACK][square] = stepAttacks(square, new int[][] { { 1, 1 }, { -1, 1 } });
+
+            for (int[][] directions : new int[][][] { ROOK_DIRECTIONS, BISHOP_DIRECTIONS }) {
+                for (int[] dir : directions) {
+                    long line = (1L << square) | slidingAttacks(square, 0L, new int[][] { dir })
+                            | slidingAttacks(square, 0L, new int[][] { { -dir[0], -dir[1] } });
+                    long between = 0L;
+                    int x2 = x(square) + dir[0], y2 = y(square) + dir[1];
+                    while (isOnBoard(x2, y2)) {
+                        BETWEEN[square][square(x2, y2)] = between;
+                        LINE[square][square(x2, y2)] = line;
+                        between |= 1L << square(x2, y2);
+                        x2 += dir[0];
+                        y2 += dir[1];
+                    }
+                }
+            }
+        }
+
+        for (int square = 0; square < 64; square++) {
+            ROOK_MASKS[square] = relevantOccupancy(square, ROOK_DIRECTIONS);
+            ROOK_SHIFTS[square] = 64 - Long.bitCount(ROOK_MASKS[square]);
+            ROOK_TABLE[square] = buildTable(square, ROOK_MASKS[square], ROOK_MAGICS[square], ROOK_SHIFTS[square],
+                    ROOK_DIRECTIONS);
+
+            BISHOP_MASKS[square] = relevantOccupancy(square, BISHOP_DIRECTIONS);
+            BISHOP_SHIFTS[square] = 64 - Long.bitCount(BISHOP_MASKS[square]);
+            BISHOP_TABLE[square] = buildTable(square, BISHOP_MASKS[square], BISHOP_MAGICS[square],
+                    BISHOP_SHIFTS[square], BISHOP_DIRECTIONS);
+        }
+    }
+
+    private Bitboards() {
+    }
+
+    /**
+     * @param x the file of the square, 0 being the a-file
+     * @param y the row of the square, 0 being the eighth rank
+     * @return the index of the square
+     */
+    public static int square(int x, int y) {
+        return y * 8 + x;
+    }
+
+    /**
+     * @param square the index of the square
+     * @return the x coordinate (file) of the square
+     */
+    public static int x(int square) {
+        return square & 7;
+    }
+
+    /**
+     * @param square the index of the square
+     * @return the y coordinate (row) of the square
+     */
+    public static int y(int square) {
+        return square >>> 3;
+    }
+
+    /**
+     * @param x the file of the square
+     * @param y the row of the square
+     * @return true if the coordinates are on the board
+     */
+    public static boolean isOnBoard(int x, int y) {
+        return 0 <= x && x < 8 && 0 <= y && y < 8;
+    }
+
+    /**
+     * Gets the squares a rook on the given square attacks, stopping each ray at
+     * the first occupied square
+     *
+     * @param square   the square the rook is on
+     * @param occupied the mask of all occupied squares
+     * @return the mask of attacked squares
+     */
+    public static long rookAttacks(int square, long occupied) {
+        return ROOK_TABLE[square][(int) (((occupied & ROOK_MASKS[square]) * ROOK_MAGICS[square])
+                >>> ROOK_SHIFTS[square])];
+    }
+
+    /**
+     * Gets the squares a bishop on the given square attacks, stopping each ray at
+     * the first occupied square
+     *
+     * @param square   the square the bishop is on
+     * @param occupied the mask of all occupied squares
+     * @return the mask of attacked squares
+     */
+    public static long bishopAttacks(int square, long occupied) {
+        return BISHOP_TABLE[square][(int) (((occupied & BISHOP_MASKS[square]) * BISHOP_MAGICS[square])
+                >>> BISHOP_SHIFTS[square])];
+    }
+
+    /**
+     * Gets the squares a queen on the given square attacks
+     *
+     * @param square   the square the queen is on
+     * @param occupied the mask of all occupied squares
+     * @return the mask of attacked squares
+     */
+    public static long queenAttacks(int square, long occupied) {
+        return rookAttacks(square, occupied) | bishopAttacks(square, occupied);
+    }
+
+    // #region table initialization
+
+    /**
+     * Fills the attack table of one square by walking the rays for every subset
+     * of its relevant occupancy
+     *
+     * @param square     the square of the sliding piece
+     * @param mask       the relevant occupancy mask of the square
+     * @param magic      the multiplier of the square
+     * @param shift      the right shift applied after the multiply
+     * @param directions the directions the piece slides in
+     * @return the attack table, indexed by magic index
+     * @throws IllegalStateException if two occupancies with different attacks
+     *                               share a slot
+     */
+    private static long[] buildTable(int square, long mask, long magic, int shift, int[][] directions) {
+
+        long[] table = new long[1 << (64 - shift)];
+
+        // enumerate every subset of the mask
+        long subset = 0L;
+        do {
+            int index = (int) ((subset * magic) >>> shift);
+            long attacks = slidingAttacks(square, subset, directions);
+
+            // a shared slot is only allowed when the attacks are the same; attacks
+            // always include at least one square, so 0 marks an unused slot
+            if (table[index] != 0L && table[index] != attacks) {
+                throw new IllegalStateException("Bad magic for square " + square);
+            }
+            table[index] = attacks;
+
+            subset = (subset - mask) & mask;
+        } while (subset != 0L);
+
+        return table;
+    }
+
+    private static long relevantOccupancy(int square, int[][] directions) {
+
+        long mask = 0L;
+
+        for (int[] dir : directions) {
+            int x2 = x(square) + dir[0], y2 = y(square) + dir[1];
+
+            // the last square of a ray never blocks anything behind it
+            while (isOnBoard(x2 + dir[0], y2 + dir[1])) {
+                mask |= 1L << square(x2, y2);
+                x2 += dir[0];
+                y2 += dir[1];
+            }
+        }
+
+        return mask;
+    }
+
+    private static long slidingAttacks(int square, long occupied, int[][] directions) {
+
+        long attacks = 0L;
+
+        for (int[] dir : directions) {
+            int x2 = x(square) + dir[0], y2 = y(square) + dir[1];
+
+            while (isOnBoard(x2, y2)) {
+                long bit = 1L << square(x2, y2);
+                attacks |= bit;
+
+                // the ray stops at the first piece, whichever color it is
+                if ((occupied & bit) != 0) {
+                    break;
+                }
+
+                x2 += dir[0];
+                y2 += dir[1];
+            }
+        }
+
+        return attacks;
+    }
+
+    private static long stepAttacks(int square, int[][] steps) {
+
+        long attacks = 0L;
+
+        for (int[] step : steps) {
+            int x2 = x(square) + step[0], y2 = y(square) + step[1];
+            if (isOnBoard(x2, y2)) {
+                attacks |= 1L << square(x2, y2);
+            }
+        }
+
+        return attacks;
+    }
+
+    // #endregion
+
+}
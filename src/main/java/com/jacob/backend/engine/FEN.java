@@ -0,0 +1,338 @@
+package com.jacob.backend.engine;
+
+/**
+ * Reads and writes Forsyth-Edwards Notation straight to and from a
+ * {@link Position}, in a single pass without splitting or replacing strings.
+ * <p>
+ * Only the piece placement is required, since Games store just that. Any of
+ * the side to move, castling rights, en passant square, halfmove clock and
+ * fullmove number may follow it, in that order. Fields left off default to
+ * white to move, no castling rights and no en passant square
+ */
+public final class FEN {
+
+    // #region constants
+
+    /**
+     * the FEN of the standard starting position
+     */
+    public static final String STARTING_POSITION = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    /**
+     * the longest a piece placement can be: 64 pieces and 7 separators
+     */
+    public static final int MAX_PLACEMENT_LENGTH = 71;
+
+    /**
+     * the longest a full FEN can be, so longer input is rejected before it is
+     * read: the placement, 5 separators, 1 + 4 + 2 characters of side, castling
+     * and en passant, and 5 digits for each clock
+     */
+    public static final int MAX_LENGTH = MAX_PLACEMENT_LENGTH + 5 + 7 + 10;
+
+    /**
+     * the most digits read for either clock, which keeps them from overflowing
+     */
+    private static final int MAX_CLOCK_DIGITS = 5;
+
+    /**
+     * the castling rights letters, in the order they are written
+     */
+    private static final String CASTLING_CHARS = "KQkq";
+
+    /**
+     * the castling rights of each letter in {@link #CASTLING_CHARS}
+     */
+    private static final int[] CASTLING_RIGHTS = { Position.WHITE_KINGSIDE, Position.WHITE_QUEENSIDE,
+            Position.BLACK_KINGSIDE, Position.BLACK_QUEENSIDE };
+
+    // #endregion
+
+    private FEN() {
+    }
+
+    // #region parsing
+
+    /**
+     * Reads a FEN into a new Position
+     *
+     * @param fen the FEN to read
+     * @return the Position the FEN describes
+     * @throws IllegalArgumentException if the FEN is malformed
+     */
+    public static Position parse(CharSequence fen) {
+
+        if (fen == null || fen.length() == 0) {
+            throw new IllegalArgumentException("FEN must not be empty");
+        }
+        int length = fen.length();
+        if (length > MAX_LENGTH) {
+            throw new IllegalArgumentException("FEN must not be longer than " + MAX_LENGTH + " characters");
+        }
+
+        Position position = new Position();
+
+        int index = parsePlacement(fen, position);
+
+        // side to move
+        if (index == length) {
+            return position;
+        }
+        index = skipSeparator(fen, index);
+        char side = fen.charAt(index++);
+        if (side != 'w' && side != 'b') {
+            throw new IllegalArgumentException("Side to move must be 'w' or 'b'");
+        }
+        position.setSideToMove(side == 'w' ? Position.WHITE : Position.BLACK);
+
+        // castling rights
+        if (index == length) {
+            return position;
+        }
+        index = skipSeparator(fen, index);
+        if (fen.charAt(index) == '-') {
+            index++;
+        } else {
+            int rights = 0, order = 0;
+            while (index < length && fen.charAt(index) != ' ') {
+                int letter = CASTLING_CHARS.indexOf(fen.charAt(index++));
+                if (letter < order) {
+                    throw new IllegalArgumentException("Castling rights must be some of 'KQkq', in order");
+                }
+                rights |= CASTLING_RIGHTS[letter];
+                order = letter + 1;
+            }
+            position.setCastlingRights(rights);
+        }
+
+        // en passant square
+        if (index == length) {
+            return position;
+        }
+        index = skipSeparator(fen, index);
+        if (fen.charAt(index) == '-') {
+            index++;
+        } else {
+            char file = fen.charAt(index++);
+            char rank = index < length ? fen.charAt(index++) : ' ';
+            if (file < 'a' || file > 'h' || rank != (position.getSideToMove() == Position.WHITE ? '6' : '3')) {
+                throw new IllegalArgumentException("En passant square must be '-' or behind a pawn that just moved");
+            }
+            position.setEnPassantSquare(Bitboards.square(file - 'a', '8' - rank));
+        }
+
+        // halfmove clock
+        if (index == length) {
+            return position;
+        }
+        index = skipSeparator(fen, index);
+        int start = index;
+        index = skipDigits(fen, index);
+        position.setHalfmoveClock(parseClock(fen, start, index));
+
+        // fullmove number
+        if (index == length) {
+            return position;
+        }
+        index = skipSeparator(fen, index);
+        start = index;
+        index = skipDigits(fen, index);
+        int fullmoveNumber = parseClock(fen, start, index);
+        if (fullmoveNumber == 0) {
+            throw new IllegalArgumentException("Fullmove number must start at 1");
+        }
+        position.setFullmoveNumber(fullmoveNumber);
+
+        if (index != length) {
+            throw new IllegalArgumentException("FEN must not have more than 6 fields");
+        }
+
+        return position;
+
+    }
+
+    /**
+     * Reads the piece placement at the start of a FEN onto an empty Position
+     *
+     * @param fen      the FEN to read
+     * @param position the Position to place the pieces on
+     * @return the index just past the placement
+     * @throws IllegalArgumentException if the placement isn't 8 ranks of 8
+     *                                  squares, or has an unknown piece
+     */
+    private static int parsePlacement(CharSequence fen, Position position) {
+
+        int length = fen.length();
+        int index = 0, x = 0, y = 0;
+
+        for (; index < length; index++) {
+            char c = fen.charAt(index);
+            if (c == ' ') {
+                break;
+            }
+            if (c == '/') {
+                if (x != 8 || ++y > 7) {
+                    throw new IllegalArgumentException("Board must have 8 rows of 8 columns");
+                }
+                x = 0;
+            } else if (c >= '1' && c <= '8') {
+                x += c - '0';
+                if (x > 8) {
+                    throw new IllegalArgumentException("Board must have 8 rows of 8 columns");
+                }
+            } else {
+                int piece = Position.pieceFromChar(c);
+                if (piece == Position.NO_PIECE) {
+                    throw new IllegalArgumentException("Unknown piece: " + c);
+                }
+                if (x > 7) {
+                    throw new IllegalArgumentException("Board must have 8 rows of 8 columns");
+                }
+                position.put(piece, Bitboards.square(x++, y));
+            }
+        }
+
+        if (x != 8 || y != 7) {
+            throw new IllegalArgumentException("Board must have 8 rows of 8 columns");
+        }
+
+        return index;
+
+    }
+
+    /**
+     * @param fen   the FEN being read
+     * @param index the index of the space before the next field
+     * @return the index of the next field
+     * @throws IllegalArgumentException if there is no field after the space
+     */
+    private static int skipSeparator(CharSequence fen, int index) {
+        if (fen.charAt(index) != ' ' || index + 1 == fen.length() || fen.charAt(index + 1) == ' ') {
+            throw new IllegalArgumentException("FEN fields must be separated by single spaces");
+        }
+        return index + 1;
+    }
+
+    /**
+     * @param fen   the FEN being read
+     * @param index the index of the first digit
+     * @return the index just past the last digit
+     */
+    private static int skipDigits(CharSequence fen, int index) {
+        while (index < fen.length() && fen.charAt(index) >= '0' && fen.charAt(index) <= '9') {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * @param fen   the FEN being read
+     * @param start the index of the first digit
+     * @param end   the index just past the last digit
+     * @return the clock the digits spell
+     * @throws IllegalArgumentException if there are no digits, too many, or the
+     *                                  field doesn't end after them
+     */
+    private static int parseClock(CharSequence fen, int start, int end) {
+
+        if (end == start || end - start > MAX_CLOCK_DIGITS || (end < fen.length() && fen.charAt(end) != ' ')) {
+            throw new IllegalArgumentException("Clocks must be numbers of at most " + MAX_CLOCK_DIGITS + " digits");
+        }
+
+        int clock = 0;
+        for (int index = start; index < end; index++) {
+            clock = clock * 10 + fen.charAt(index) - '0';
+        }
+        return clock;
+
+    }
+
+    // #endregion
+
+    // #region writing
+
+    /**
+     * Writes all six fields of a Position's FEN
+     *
+     * @param position the Position to write
+     * @return the FEN
+     */
+    public static String format(Position position) {
+        StringBuilder fen = new StringBuilder(MAX_LENGTH);
+        write(position, fen);
+        return fen.toString();
+    }
+
+    /**
+     * Appends all six fields of a Position's FEN, so the same builder can be
+     * reused for many positions
+     *
+     * @param position the Position to write
+     * @param fen      the builder to append to
+     */
+    public static void write(Position position, StringBuilder fen) {
+
+        writePlacement(position, fen);
+
+        fen.append(' ').append(position.getSideToMove() == Position.WHITE ? 'w' : 'b');
+
+        fen.append(' ');
+        int rights = position.getCastlingRights();
+        if (rights == 0) {
+            fen.append('-');
+        }
+        for (int letter = 0; letter < CASTLING_RIGHTS.length; letter++) {
+            if ((rights & CASTLING_RIGHTS[letter]) != 0) {
+                fen.append(CASTLING_CHARS.charAt(letter));
+            }
+        }
+
+        fen.append(' ');
+        int enPassantSquare = position.getEnPassantSquare();
+        if (enPassantSquare == Position.NO_SQUARE) {
+            fen.append('-');
+        } else {
+            fen.append((char) ('a' + Bitboards.x(enPassantSquare))).append((char) ('8' - Bitboards.y(enPassantSquare)));
+        }
+
+        fen.append(' ').append(position.getHalfmoveClock());
+        fen.append(' ').append(position.getFullmoveNumber());
+
+    }
+
+    /**
+     * Appends the piece placement field of a Position's FEN, with the origin at
+     * the top-left
+     *
+     * @param position the Position to write
+     * @param fen      the builder to append to
+     */
+    public static void writePlacement(Position position, StringBuilder fen) {
+
+        for (int y = 0; y < 8; y++) {
+            if (y > 0) {
+                fen.append('/');
+            }
+            int empty = 0;
+            for (int x = 0; x < 8; x++) {
+                int piece = position.pieceAt(Bitboards.square(x, y));
+                if (piece == Position.NO_PIECE) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    fen.append((char) ('0' + empty));
+                    empty = 0;
+                }
+                fen.append(Position.charOf(piece));
+            }
+            if (empty > 0) {
+                fen.append((char) ('0' + empty));
+            }
+        }
+
+    }
+
+    // #endregion
+
+}
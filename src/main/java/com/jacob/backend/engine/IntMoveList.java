@@ -0,0 +1,102 @@
+package com.jacob.backend.engine;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of packed {@link Move}s, backed by an int array. Meant to be
+ * cleared and filled again, so the move generator doesn't allocate once the
+ * list has grown to fit a position
+ */
+public class IntMoveList {
+
+    /**
+     * enough for the most moves found in any legal chess position
+     */
+    private static final int DEFAULT_CAPACITY = 256;
+
+    // #region variables
+
+    /**
+     * the packed moves, of which the first {@link #size} are in use
+     */
+    private int[] moves;
+
+    /**
+     * the number of moves in the list
+     */
+    private int size;
+
+    // #endregion
+
+    /**
+     * Creates a new, empty IntMoveList
+     */
+    public IntMoveList() {
+        moves = new int[DEFAULT_CAPACITY];
+    }
+
+    /**
+     * Adds a move to the end of the list
+     *
+     * @param move the packed move to add
+     */
+    public void add(int move) {
+        if (size == moves.length) {
+            moves = Arrays.copyOf(moves, size * 2);
+        }
+        moves[size++] = move;
+    }
+
+    /**
+     * @param index the index of the move
+     * @return the packed move at the index
+     * @throws IndexOutOfBoundsException if the index is outside the list
+     */
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+        return moves[index];
+    }
+
+    /**
+     * @param index the index of the move
+     * @param move  the packed move to put at the index
+     * @throws IndexOutOfBoundsException if the index is outside the list
+     */
+    public void set(int index, int move) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+        moves[index] = move;
+    }
+
+    /**
+     * @return the number of moves in the list
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if the list has no moves
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return a copy of the moves in the list
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(moves, size);
+    }
+
+    /**
+     * Removes every move, keeping the capacity for reuse
+     */
+    public void clear() {
+        size = 0;
+    }
+
+}
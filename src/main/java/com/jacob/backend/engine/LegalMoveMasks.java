@@ -0,0 +1,172 @@
+package com.jacob.backend.engine;
+
+/**
+ * The check and pin restrictions on one color's moves in a Position. Computed
+ * once per Position so each candidate move can be accepted or rejected with a
+ * few mask operations, instead of simulating it and looking for check
+ */
+public class LegalMoveMasks {
+
+    /**
+     * Masks that accept every move, for when check is ignored
+     */
+    public static final LegalMoveMasks IGNORE_CHECK = new LegalMoveMasks(null, -1, -1L, 0L, false);
+
+    // #region variables
+
+    /**
+     * the Position the masks were computed for
+     */
+    private final Position position;
+
+    /**
+     * the square of the king being protected, or -1 if there is none
+     */
+    private final int kingSquare;
+
+    /**
+     * the squares a piece other than the king may move to: everywhere when not in
+     * check, the checker and the squares between it and the king when in single
+     * check, and nowhere when in double check
+     */
+    private final long checkMask;
+
+    /**
+     * the pieces which may only move along the line between the king and the
+     * piece pinning them
+     */
+    private final long pinned;
+
+    /**
+     * true if the masks can't describe the position, and each move must be
+     * simulated and checked instead
+     */
+    private final boolean requiresSimulation;
+
+    // #endregion
+
+    private LegalMoveMasks(Position position, int kingSquare, long checkMask, long pinned,
+            boolean requiresSimulation) {
+        this.position = position;
+        this.kingSquare = kingSquare;
+        this.checkMask = checkMask;
+        this.pinned = pinned;
+        this.requiresSimulation = requiresSimulation;
+    }
+
+    /**
+     * Computes the check and pin masks for the given color
+     *
+     * @param position the Position to compute the masks for
+     * @param color    the color whose moves are restricted
+     * @return the masks
+     */
+    public static LegalMoveMasks of(Position position, int color) {
+
+        long kings = position.getPieces(color, Position.KING);
+
+        // without a king nothing can be left in check
+        if (kings == 0) {
+            return new LegalMoveMasks(position, -1, -1L, 0L, false);
+        }
+
+        // with extra kings on a hand-made board, moving one can change which king
+        // is checked, so fall back to simulating every move
+        if ((kings & (kings - 1)) != 0) {
+            return new LegalMoveMasks(position, -1, -1L, 0L, true);
+        }
+
+        int kingSquare = Long.numberOfTrailingZeros(kings);
+        int opponentColor = 1 - color;
+        long occupied = position.getOccupied();
+
+        // Find the pieces giving check
+        long checkers = position.attackersOf(kingSquare, opponentColor, occupied);
+
+        long checkMask;
+        if (checkers == 0) {
+            checkMask = -1L;
+        } else if ((checkers & (checkers - 1)) == 0) {
+            checkMask = checkers | Bitboards.BETWEEN[kingSquare][Long.numberOfTrailingZeros(checkers)];
+        } else {
+            checkMask = 0L;
+        }
+
+        // Find the sliders that would attack the king if nothing stood between
+        // them, and pin the lone piece of the color when there is only one
+        long queens = position.getPieces(opponentColor, Position.QUEEN);
+        long snipers = (Bitboards.rookAttacks(kingSquare, 0L)
+                & (position.getPieces(opponentColor, Position.ROOK) | queens))
+                | (Bitboards.bishopAttacks(kingSquare, 0L)
+                        & (position.getPieces(opponentColor, Position.BISHOP) | queens));
+
+        long pinned = 0L;
+        while (snipers != 0) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+
+            long blockers = Bitboards.BETWEEN[kingSquare][sniper] & occupied;
+            if (blockers != 0 && (blockers & (blockers - 1)) == 0) {
+                pinned |= blockers & position.getColorOccupancy(color);
+            }
+        }
+
+        return new LegalMoveMasks(position, kingSquare, checkMask, pinned, false);
+
+    }
+
+    /**
+     * Removes the target squares that would leave the king in check
+     *
+     * @param start   the square of the moving piece
+     * @param targets the squares the piece could move to, ignoring check
+     * @return the squares the piece can legally move to
+     */
+    public long legalTargets(int start, long targets) {
+
+        if (position == null || requiresSimulation || kingSquare < 0) {
+            return targets;
+        }
+
+        // the king may only move to squares that aren't attacked once it has
+        // stepped off its current square
+        if (start == kingSquare) {
+            long occupied = position.getOccupied() & ~(1L << kingSquare);
+            int opponentColor = 1 - Position.colorOf(position.pieceAt(start));
+            long legal = 0L;
+            while (targets != 0) {
+                int dest = Long.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                if (!position.isSquareAttacked(dest, opponentColor, occupied)) {
+                    legal |= 1L << dest;
+                }
+            }
+            return legal;
+        }
+
+        targets &= checkMask;
+
+        if ((pinned & (1L << start)) != 0) {
+            targets &= Bitboards.LINE[kingSquare][start];
+        }
+
+        return targets;
+
+    }
+
+    /**
+     * @return true if these masks accept every move
+     */
+    public boolean isCheckIgnored() {
+        return position == null;
+    }
+
+    /**
+     * @return true if each move must be simulated and checked, since the masks
+     *         can't describe the position
+     */
+    public boolean requiresSimulation() {
+        return requiresSimulation;
+    }
+
+}
@@ -0,0 +1,184 @@
+package com.jacob.backend.engine;
+
+/**
+ * Helpers for moves packed into a single int, so the move generator can work
+ * without allocating. From the lowest bit up, a move holds:
+ * <ul>
+ * <li>bits 0-5: the square the piece moves from</li>
+ * <li>bits 6-11: the square the piece moves to</li>
+ * <li>bits 12-15: the piece that moves</li>
+ * <li>bits 16-19: the piece that is captured, if any</li>
+ * <li>bits 20-23: the piece a pawn is promoted to, if any</li>
+ * <li>bits 24-29: the flags, e.g. {@link #CASTLE} or {@link #CHECK}</li>
+ * </ul>
+ */
+public final class Move {
+
+    // #region constants
+
+    /**
+     * the move captures a pawn with en passant
+     */
+    public static final int EN_PASSANT = 1 << 24;
+
+    /**
+     * the move is a king castling
+     */
+    public static final int CASTLE = 1 << 25;
+
+    /**
+     * the capture, check, mate and stalemate of the move have been worked out,
+     * and should be shown when the move is formatted
+     */
+    public static final int ANNOTATED = 1 << 26;
+
+    /**
+     * the move puts the opponent in check
+     */
+    public static final int CHECK = 1 << 27;
+
+    /**
+     * the move puts the opponent in mate
+     */
+    public static final int MATE = 1 << 28;
+
+    /**
+     * the move puts the opponent in stalemate
+     */
+    public static final int STALEMATE = 1 << 29;
+
+    /**
+     * the bits identifying a move: its squares and the piece that moves
+     */
+    public static final int KEY_MASK = 0xFFFF;
+
+    private static final int SQUARE_MASK = 0x3F;
+    private static final int PIECE_MASK = 0xF;
+
+    private static final int TO_SHIFT = 6;
+    private static final int PIECE_SHIFT = 12;
+    private static final int CAPTURED_SHIFT = 16;
+    private static final int PROMOTION_SHIFT = 20;
+
+    // #endregion
+
+    private Move() {
+    }
+
+    // #region packing
+
+    /**
+     * @param from     the square the piece moves from
+     * @param to       the square the piece moves to
+     * @param piece    the piece that moves
+     * @param captured the piece that is captured, or {@link Position#NO_PIECE}
+     * @return the packed move
+     */
+    public static int of(int from, int to, int piece, int captured) {
+        return of(from, to, piece, captured, Position.NO_PIECE, 0);
+    }
+
+    /**
+     * @param from      the square the piece moves from
+     * @param to        the square the piece moves to
+     * @param piece     the piece that moves
+     * @param captured  the piece that is captured, or {@link Position#NO_PIECE}
+     * @param promotion the piece a pawn is promoted to, or
+     *                  {@link Position#NO_PIECE}
+     * @param flags     the flags of the move
+     * @return the packed move
+     */
+    public static int of(int from, int to, int piece, int captured, int promotion, int flags) {
+        return from
+                | to << TO_SHIFT
+                | piece << PIECE_SHIFT
+                | (captured & PIECE_MASK) << CAPTURED_SHIFT
+                | (promotion & PIECE_MASK) << PROMOTION_SHIFT
+                | flags;
+    }
+
+    /**
+     * @param move       the packed move
+     * @param isCheck    if the move puts the opponent in check
+     * @param hasNoMoves if the opponent has no valid moves after the move
+     * @return the move with its annotations set
+     */
+    public static int annotate(int move, boolean isCheck, boolean hasNoMoves) {
+        move &= ~(CHECK | MATE | STALEMATE);
+        move |= ANNOTATED;
+        if (isCheck) {
+            move |= hasNoMoves ? CHECK | MATE : CHECK;
+        } else if (hasNoMoves) {
+            move |= STALEMATE;
+        }
+        return move;
+    }
+
+    // #endregion
+
+    // #region unpacking
+
+    /**
+     * @param move the packed move
+     * @return the square the piece moves from
+     */
+    public static int from(int move) {
+        return move & SQUARE_MASK;
+    }
+
+    /**
+     * @param move the packed move
+     * @return the square the piece moves to
+     */
+    public static int to(int move) {
+        return (move >>> TO_SHIFT) & SQUARE_MASK;
+    }
+
+    /**
+     * @param move the packed move
+     * @return the piece that moves
+     */
+    public static int piece(int move) {
+        return (move >>> PIECE_SHIFT) & PIECE_MASK;
+    }
+
+    /**
+     * @param move the packed move
+     * @return the piece that is captured, or {@link Position#NO_PIECE}
+     */
+    public static int captured(int move) {
+        return toPiece((move >>> CAPTURED_SHIFT) & PIECE_MASK);
+    }
+
+    /**
+     * @param move the packed move
+     * @return the piece a pawn is promoted to, or {@link Position#NO_PIECE}
+     */
+    public static int promotion(int move) {
+        return toPiece((move >>> PROMOTION_SHIFT) & PIECE_MASK);
+    }
+
+    /**
+     * @param move the packed move
+     * @return true if the move captures an opposing piece, or is an en passant
+     */
+    public static boolean isCapture(int move) {
+        return captured(move) != Position.NO_PIECE || hasFlag(move, EN_PASSANT);
+    }
+
+    /**
+     * @param move the packed move
+     * @param flag the flag to look for, e.g. {@link #CASTLE}
+     * @return true if the move has the flag
+     */
+    public static boolean hasFlag(int move, int flag) {
+        return (move & flag) != 0;
+    }
+
+    private static int toPiece(int bits) {
+        return bits == PIECE_MASK ? Position.NO_PIECE : bits;
+    }
+
+    // #endregion
+
+}
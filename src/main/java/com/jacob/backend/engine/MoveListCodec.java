@@ -0,0 +1,243 @@
+package com.jacob.backend.engine;
+
+/**
+ * Reads and writes the moves of a game, and how long each took, as a compact
+ * array of bytes. The array holds, in order:
+ * <ul>
+ * <li>the number of plies, as a varint</li>
+ * <li>2 bytes per ply: the squares moved from and to, the piece a pawn is
+ * promoted to, and whether the move checks, mates or stalemates</li>
+ * <li>a varint per ply: the change in milliseconds from the same player's
+ * ply before, zigzag encoded so that moves taking about as long as that
+ * player's last one stay small</li>
+ * </ul>
+ * The piece that moves, what it captures, and whether it castles or captures en
+ * passant aren't stored, since they follow from the position the move is played
+ * in. Moves are decoded straight onto a {@link Position}, without parsing any
+ * strings
+ */
+public final class MoveListCodec {
+
+    // #region constants
+
+    private static final int SQUARE_MASK = 0x3F;
+    private static final int TO_SHIFT = 6;
+    private static final int PROMOTION_SHIFT = 12;
+    private static final int ANNOTATION_SHIFT = 14;
+
+    /**
+     * the piece types a pawn can be promoted to, in the order they are written
+     */
+    private static final int[] PROMOTIONS = { Position.KNIGHT, Position.BISHOP, Position.ROOK, Position.QUEEN };
+
+    /**
+     * the annotations of a move, in the order they are written: none, check,
+     * mate and stalemate
+     */
+    private static final int[] ANNOTATIONS = { 0, Move.CHECK, Move.CHECK | Move.MATE, Move.STALEMATE };
+
+    // #endregion
+
+    private MoveListCodec() {
+    }
+
+    /**
+     * Receives each move as it is decoded
+     */
+    @FunctionalInterface
+    public interface MoveVisitor {
+
+        /**
+         * @param move        the packed, annotated move, which has just been played
+         *                    on the Position being decoded onto
+         * @param clockMillis how many milliseconds the move took
+         */
+        void visit(int move, int clockMillis);
+
+    }
+
+    // #region encoding
+
+    /**
+     * Writes the moves of a game
+     *
+     * @param moves       the packed moves, in the order they were played
+     * @param clockMillis how many milliseconds each move took, at least as many
+     *                    as there are moves
+     * @return the encoded moves
+     * @throws IllegalArgumentException if a pawn reaches the last rank without
+     *                                  being promoted
+     */
+    public static byte[] encode(IntMoveList moves, int[] clockMillis) {
+
+        int plies = moves.size();
+
+        // the varints are at most 5 bytes each
+        byte[] data = new byte[5 + plies * 2 + plies * 5];
+        int index = writeVarint(data, 0, plies);
+
+        for (int ply = 0; ply < plies; ply++) {
+            int move = moves.get(ply);
+            int encoded = Move.from(move) | Move.to(move) << TO_SHIFT;
+
+            int promotion = Move.promotion(move);
+            if (promotion != Position.NO_PIECE) {
+                encoded |= (Position.typeOf(promotion) - Position.KNIGHT) << PROMOTION_SHIFT;
+            } else if (Position.typeOf(Move.piece(move)) == Position.PAWN && isLastRank(Move.to(move))) {
+                throw new IllegalArgumentException("A pawn reaching the last rank must be promoted");
+            }
+
+            if (Move.hasFlag(move, Move.MATE)) {
+                encoded |= 2 << ANNOTATION_SHIFT;
+            } else if (Move.hasFlag(move, Move.CHECK)) {
+                encoded |= 1 << ANNOTATION_SHIFT;
+            } else if (Move.hasFlag(move, Move.STALEMATE)) {
+                encoded |= 3 << ANNOTATION_SHIFT;
+            }
+
+            data[index++] = (byte) (encoded >>> 8);
+            data[index++] = (byte) encoded;
+        }
+
+        // plies alternate between the players, so each is compared with the
+        // same player's ply before it
+        for (int ply = 0; ply < plies; ply++) {
+            int delta = clockMillis[ply] - (ply >= 2 ? clockMillis[ply - 2] : 0);
+            index = writeVarint(data, index, (delta << 1) ^ (delta >> 31));
+        }
+
+        byte[] encoded = new byte[index];
+        System.arraycopy(data, 0, encoded, 0, index);
+        return encoded;
+
+    }
+
+    /**
+     * @param data  the array to write to
+     * @param index the index to write at
+     * @param value the value to write, read as unsigned
+     * @return the index just past the varint
+     */
+    private static int writeVarint(byte[] data, int index, int value) {
+        while ((value & ~0x7F) != 0) {
+            data[index++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[index++] = (byte) value;
+        return index;
+    }
+
+    // #endregion
+
+    // #region decoding
+
+    /**
+     * @param data the encoded moves
+     * @return the number of plies the encoded moves hold
+     * @throws IllegalArgumentException if the data is malformed
+     */
+    public static int plyCount(byte[] data) {
+        return (int) readVarint(data, 0);
+    }
+
+    /**
+     * Plays encoded moves on a Position, handing each to the visitor just after
+     * it is played
+     *
+     * @param data     the encoded moves
+     * @param position the Position the moves start from, which is left after
+     *                 the last move
+     * @param visitor  receives each move
+     * @throws IllegalArgumentException if the data is malformed, or a move
+     *                                  starts from an empty square
+     */
+    public static void decode(byte[] data, Position position, MoveVisitor visitor) {
+
+        long header = readVarint(data, 0);
+        int plies = (int) header;
+        int index = (int) (header >>> 32);
+        if (plies < 0 || index + 2L * plies > data.length) {
+            throw new IllegalArgumentException("Encoded moves are shorter than their ply count");
+        }
+        int clockIndex = index + plies * 2;
+
+        // the clocks of the last two plies, the one before last first
+        int before = 0;
+        int last = 0;
+        for (int ply = 0; ply < plies; ply++) {
+            int encoded = (data[index++] & 0xFF) << 8 | (data[index++] & 0xFF);
+            int from = encoded & SQUARE_MASK;
+            int to = (encoded >>> TO_SHIFT) & SQUARE_MASK;
+
+            int piece = position.pieceAt(from);
+            if (piece == Position.NO_PIECE) {
+                throw new IllegalArgumentException("Encoded move starts from an empty square");
+            }
+            int captured = position.pieceAt(to);
+            int promotion = Position.NO_PIECE;
+            int flags = Move.ANNOTATED | ANNOTATIONS[encoded >>> ANNOTATION_SHIFT];
+
+            if (Position.typeOf(piece) == Position.PAWN) {
+                // a diagonal pawn move onto an empty square is an en passant
+                if (Bitboards.x(from) != Bitboards.x(to) && captured == Position.NO_PIECE) {
+                    captured = position.pieceAt(Bitboards.square(Bitboards.x(to), Bitboards.y(from)));
+                    flags |= Move.EN_PASSANT;
+                }
+                if (isLastRank(to)) {
+                    promotion = Position.piece(Position.colorOf(piece),
+                            PROMOTIONS[(encoded >>> PROMOTION_SHIFT) & 3]);
+                }
+            } else if (Position.typeOf(piece) == Position.KING && Math.abs(Bitboards.x(from) - Bitboards.x(to)) >= 2) {
+                flags |= Move.CASTLE;
+            }
+
+            int move = Move.of(from, to, piece, captured, promotion, flags);
+            position.setSideToMove(Position.colorOf(piece));
+            position.makeMove(move);
+
+            long delta = readVarint(data, clockIndex);
+            clockIndex = (int) (delta >>> 32);
+            int clock = before + (((int) delta >>> 1) ^ -((int) delta & 1));
+            before = last;
+            last = clock;
+
+            visitor.visit(move, clock);
+        }
+
+    }
+
+    /**
+     * @param data  the array to read from
+     * @param index the index of the varint
+     * @return the value read in the low 32 bits, and the index just past the
+     *         varint in the high 32 bits
+     * @throws IllegalArgumentException if the varint runs past the data, or is
+     *                                  longer than 5 bytes
+     */
+    private static long readVarint(byte[] data, int index) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (index >= data.length) {
+                throw new IllegalArgumentException("Encoded moves end in the middle of a number");
+            }
+            byte b = data[index++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return (long) index << 32 | (value & 0xFFFFFFFFL);
+            }
+        }
+        throw new IllegalArgumentException("Encoded moves hold a number longer than 5 bytes");
+    }
+
+    // #endregion
+
+    /**
+     * @param square the square
+     * @return true if the square is on the first or last rank
+     */
+    private static boolean isLastRank(int square) {
+        int y = Bitboards.y(square);
+        return y == 0 || y == 7;
+    }
+
+}
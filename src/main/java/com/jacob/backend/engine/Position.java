@@ -0,0 +1,654 @@
+package com.jacob.backend.engine;
+
+import java.util.Arrays;
+
+/**
+ * Bitboard representation of the pieces on a chess board. Holds one 64-bit
+ * mask per piece type and color, an occupancy mask per color and for the whole
+ * board, and a square-indexed lookup of which piece stands where, along with
+ * the side to move, castling rights, en passant square, move clocks and Zobrist
+ * hash
+ */
+public class Position {
+
+    // #region constants
+
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+
+    /**
+     * Marks an empty square in the piece lookup
+     */
+    public static final int NO_PIECE = -1;
+
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+
+    /**
+     * Marks that there is no en passant square
+     */
+    public static final int NO_SQUARE = -1;
+
+    /**
+     * The castling rights kept by a move from or to each square. Moving a king or
+     * rook off its starting square, or capturing a rook on it, loses the rights
+     * that depend on it
+     */
+    private static final int[] CASTLING_MASKS = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_MASKS, 15);
+        CASTLING_MASKS[Bitboards.square(4, 7)] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLING_MASKS[Bitboards.square(7, 7)] &= ~WHITE_KINGSIDE;
+        CASTLING_MASKS[Bitboards.square(0, 7)] &= ~WHITE_QUEENSIDE;
+        CASTLING_MASKS[Bitboards.square(4, 0)] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+        CASTLING_MASKS[Bitboards.square(7, 0)] &= ~BLACK_KINGSIDE;
+        CASTLING_MASKS[Bitboards.square(0, 0)] &= ~BLACK_QUEENSIDE;
+    }
+
+    /**
+     * The FEN letter of every piece, indexed by piece: white pieces first, then
+     * black pieces, each in the order of the type constants
+     */
+    private static final String PIECE_CHARS = "PNBRQKpnbrqk";
+
+    // #endregion
+
+    // #region variables
+
+    /**
+     * one mask per piece, indexed by {@link #piece(int, int)}
+     */
+    private final long[] pieces = new long[12];
+
+    /**
+     * the squares occupied by each color
+     */
+    private final long[] colors = new long[2];
+
+    /**
+     * the squares occupied by any piece
+     */
+    private long occupied;
+
+    /**
+     * the piece standing on each square, or {@link #NO_PIECE}
+     */
+    private final int[] board = new int[64];
+
+    /**
+     * the color of the player to move
+     */
+    private int sideToMove = WHITE;
+
+    /**
+     * the castling rights still held, a combination of {@link #WHITE_KINGSIDE},
+     * {@link #WHITE_QUEENSIDE}, {@link #BLACK_KINGSIDE} and
+     * {@link #BLACK_QUEENSIDE}
+     */
+    private int castlingRights;
+
+    /**
+     * the square a pawn skipped over with its last move, or {@link #NO_SQUARE}
+     */
+    private int enPassantSquare = NO_SQUARE;
+
+    /**
+     * the number of plies since the last capture or pawn move
+     */
+    private int halfmoveClock;
+
+    /**
+     * the number of the current full move, starting at 1 and increasing after
+     * black moves
+     */
+    private int fullmoveNumber = 1;
+
+    /**
+     * the Zobrist hash of the pieces, side to move, castling rights and en
+     * passant file, kept up to date by every change
+     */
+    private long hash;
+
+    /**
+     * the moves made with {@link #makeMove(int)} that haven't been unmade yet,
+     * most recent last
+     */
+    private int[] undoMoves = new int[16];
+
+    /**
+     * the piece each move in {@link #undoMoves} captured, or {@link #NO_PIECE}
+     */
+    private int[] undoCaptured = new int[16];
+
+    /**
+     * the piece each move in {@link #undoMoves} displaced besides the captured
+     * one: the rook of a castle, or whatever stood on the destination of an en
+     * passant
+     */
+    private int[] undoDisplaced = new int[16];
+
+    /**
+     * the castling rights before each move in {@link #undoMoves}
+     */
+    private int[] undoCastlingRights = new int[16];
+
+    /**
+     * the en passant square before each move in {@link #undoMoves}
+     */
+    private int[] undoEnPassantSquares = new int[16];
+
+    /**
+     * the halfmove clock before each move in {@link #undoMoves}
+     */
+    private int[] undoHalfmoveClocks = new int[16];
+
+    /**
+     * the hash before each move in {@link #undoMoves}
+     */
+    private long[] undoHashes = new long[16];
+
+    /**
+     * the number of moves that can be unmade
+     */
+    private int undoSize;
+
+    // #endregion
+
+    /**
+     * Creates a new, empty Position
+     */
+    public Position() {
+        Arrays.fill(board, NO_PIECE);
+    }
+
+    /**
+     * Creates a Position from an 8x8 grid of single character Strings, as
+     * produced by {@code GameService.FENToGrid}
+     *
+     * @param grid the grid to read, with the origin at the top-left
+     * @return the Position holding the same pieces as the grid
+     * @throws IllegalArgumentException if the grid isn't 8x8 or contains an
+     *                                  unknown piece
+     */
+    public static Position fromGrid(String[][] grid) {
+
+        if (grid.length != 8) {
+            throw new IllegalArgumentException("Board must have 8 rows");
+        }
+
+        Position position = new Position();
+
+        for (int y = 0; y < 8; y++) {
+            if (grid[y].length != 8) {
+                throw new IllegalArgumentException("Board must have 8 columns");
+            }
+            for (int x = 0; x < 8; x++) {
+                if (grid[y][x].equals(" ")) {
+                    continue;
+                }
+                int piece = grid[y][x].length() == 1 ? pieceFromChar(grid[y][x].charAt(0)) : NO_PIECE;
+                if (piece == NO_PIECE) {
+                    throw new IllegalArgumentException("Unknown piece: " + grid[y][x]);
+                }
+                position.put(piece, Bitboards.square(x, y));
+            }
+        }
+
+        return position;
+    }
+
+    // #region piece helpers
+
+    /**
+     * @param color the color of the piece
+     * @param type  the type of the piece
+     * @return the piece index
+     */
+    public static int piece(int color, int type) {
+        return color * 6 + type;
+    }
+
+    /**
+     * @param piece the piece index
+     * @return the color of the piece
+     */
+    public static int colorOf(int piece) {
+        return piece / 6;
+    }
+
+    /**
+     * @param piece the piece index
+     * @return the type of the piece
+     */
+    public static int typeOf(int piece) {
+        return piece % 6;
+    }
+
+    /**
+     * @param c a FEN piece letter, e.g. 'N' or 'q'
+     * @return the piece index, or {@link #NO_PIECE} if the letter is unknown
+     */
+    public static int pieceFromChar(char c) {
+        return PIECE_CHARS.indexOf(c);
+    }
+
+    /**
+     * @param piece the piece index
+     * @return the FEN letter of the piece
+     */
+    public static char charOf(int piece) {
+        return PIECE_CHARS.charAt(piece);
+    }
+
+    // #endregion
+
+    // #region board access
+
+    /**
+     * Places a piece on an empty square
+     *
+     * @param piece  the piece to place
+     * @param square the square to place it on
+     */
+    public void put(int piece, int square) {
+        long bit = 1L << square;
+        pieces[piece] |= bit;
+        colors[colorOf(piece)] |= bit;
+        occupied |= bit;
+        board[square] = piece;
+        hash ^= Zobrist.PIECES[piece][square];
+    }
+
+    /**
+     * Removes whatever piece stands on the given square
+     *
+     * @param square the square to clear
+     * @return the removed piece, or {@link #NO_PIECE} if the square was empty
+     */
+    public int remove(int square) {
+        int piece = board[square];
+        if (piece != NO_PIECE) {
+            long bit = ~(1L << square);
+            pieces[piece] &= bit;
+            colors[colorOf(piece)] &= bit;
+            occupied &= bit;
+            board[square] = NO_PIECE;
+            hash ^= Zobrist.PIECES[piece][square];
+        }
+        return piece;
+    }
+
+    /**
+     * @param square the square to look at
+     * @return the piece on the square, or {@link #NO_PIECE}
+     */
+    public int pieceAt(int square) {
+        return board[square];
+    }
+
+    /**
+     * @param piece the piece index
+     * @return the mask of squares holding the given piece
+     */
+    public long getPieces(int piece) {
+        return pieces[piece];
+    }
+
+    /**
+     * @param color the color of the pieces
+     * @param type  the type of the pieces
+     * @return the mask of squares holding the given piece
+     */
+    public long getPieces(int color, int type) {
+        return pieces[piece(color, type)];
+    }
+
+    /**
+     * @param color the color to look up
+     * @return the mask of squares holding a piece of the given color
+     */
+    public long getColorOccupancy(int color) {
+        return colors[color];
+    }
+
+    /**
+     * @return the mask of all occupied squares
+     */
+    public long getOccupied() {
+        return occupied;
+    }
+
+    /**
+     * Gets the square of the given color's king. If there is more than one, the
+     * last one in board order (a8 to h1) is returned
+     *
+     * @param color the color of the king
+     * @return the square of the king, or -1 if there is none
+     */
+    public int kingSquare(int color) {
+        long kings = pieces[piece(color, KING)];
+        return kings == 0 ? -1 : 63 - Long.numberOfLeadingZeros(kings);
+    }
+
+    /**
+     * Gets the pieces of the given color attacking a square, by looking outward
+     * from the square with each piece's attack pattern
+     *
+     * @param square   the square being attacked
+     * @param byColor  the color of the attacking pieces
+     * @param occupied the occupancy to use for sliding pieces, which may differ
+     *                 from the real one, e.g. with a king lifted off the board
+     * @return the mask of attacking pieces
+     */
+    public long attackersOf(int square, int byColor, long occupied) {
+
+        long queens = getPieces(byColor, QUEEN);
+
+        return (Bitboards.PAWN_ATTACKS[1 - byColor][square] & getPieces(byColor, PAWN))
+                | (Bitboards.KNIGHT_ATTACKS[square] & getPieces(byColor, KNIGHT))
+                | (Bitboards.KING_ATTACKS[square] & getPieces(byColor, KING))
+                | (Bitboards.bishopAttacks(square, occupied) & (getPieces(byColor, BISHOP) | queens))
+                | (Bitboards.rookAttacks(square, occupied) & (getPieces(byColor, ROOK) | queens));
+    }
+
+    /**
+     * @param square  the square being attacked
+     * @param byColor the color of the attacking pieces
+     * @return true if any piece of the given color attacks the square
+     */
+    public boolean isSquareAttacked(int square, int byColor) {
+        return attackersOf(square, byColor, occupied) != 0;
+    }
+
+    /**
+     * @param square   the square being attacked
+     * @param byColor  the color of the attacking pieces
+     * @param occupied the occupancy to use for sliding pieces
+     * @return true if any piece of the given color attacks the square
+     * @see #attackersOf(int, int, long)
+     */
+    public boolean isSquareAttacked(int square, int byColor, long occupied) {
+        return attackersOf(square, byColor, occupied) != 0;
+    }
+
+    // #endregion
+
+    // #region state
+
+    /**
+     * @return the color of the player to move
+     */
+    public int getSideToMove() {
+        return sideToMove;
+    }
+
+    /**
+     * @param color the color of the player to move
+     */
+    public void setSideToMove(int color) {
+        if (color != sideToMove) {
+            hash ^= Zobrist.BLACK_TO_MOVE;
+            sideToMove = color;
+        }
+    }
+
+    /**
+     * @return the castling rights still held
+     */
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    /**
+     * @param rights the castling rights still held, e.g.
+     *               {@code WHITE_KINGSIDE | BLACK_QUEENSIDE}
+     */
+    public void setCastlingRights(int rights) {
+        hash ^= Zobrist.CASTLING[castlingRights] ^ Zobrist.CASTLING[rights];
+        castlingRights = rights;
+    }
+
+    /**
+     * Gets the castling rights the pieces could still have, going only by the
+     * board: those whose king and rook stand on their starting squares
+     *
+     * @return the castling rights
+     */
+    public int inferCastlingRights() {
+        int rights = 0;
+        if (board[Bitboards.square(4, 7)] == piece(WHITE, KING)) {
+            rights |= board[Bitboards.square(7, 7)] == piece(WHITE, ROOK) ? WHITE_KINGSIDE : 0;
+            rights |= board[Bitboards.square(0, 7)] == piece(WHITE, ROOK) ? WHITE_QUEENSIDE : 0;
+        }
+        if (board[Bitboards.square(4, 0)] == piece(BLACK, KING)) {
+            rights |= board[Bitboards.square(7, 0)] == piece(BLACK, ROOK) ? BLACK_KINGSIDE : 0;
+            rights |= board[Bitboards.square(0, 0)] == piece(BLACK, ROOK) ? BLACK_QUEENSIDE : 0;
+        }
+        return rights;
+    }
+
+    /**
+     * @return the square a pawn skipped over with its last move, or
+     *         {@link #NO_SQUARE}
+     */
+    public int getEnPassantSquare() {
+        return enPassantSquare;
+    }
+
+    /**
+     * @param square the square a pawn skipped over with its last move, or
+     *               {@link #NO_SQUARE}
+     */
+    public void setEnPassantSquare(int square) {
+        if (enPassantSquare != NO_SQUARE) {
+            hash ^= Zobrist.EN_PASSANT_FILE[Bitboards.x(enPassantSquare)];
+        }
+        if (square != NO_SQUARE) {
+            hash ^= Zobrist.EN_PASSANT_FILE[Bitboards.x(square)];
+        }
+        enPassantSquare = square;
+    }
+
+    /**
+     * @return the Zobrist hash of this Position
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * @return the number of plies since the last capture or pawn move
+     */
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    /**
+     * @param halfmoveClock the number of plies since the last capture or pawn
+     *                      move
+     */
+    public void setHalfmoveClock(int halfmoveClock) {
+        this.halfmoveClock = halfmoveClock;
+    }
+
+    /**
+     * @return the number of the current full move, starting at 1
+     */
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    /**
+     * @param fullmoveNumber the number of the current full move, starting at 1
+     */
+    public void setFullmoveNumber(int fullmoveNumber) {
+        this.fullmoveNumber = fullmoveNumber;
+    }
+
+    // #endregion
+
+    // #region make/unmake
+
+    /**
+     * Plays a move on this Position, remembering what it changed so it can be
+     * reverted with {@link #unmakeMove()}. The move isn't checked for validity
+     *
+     * @param move the packed {@link Move} to play
+     */
+    public void makeMove(int move) {
+
+        if (undoSize == undoMoves.length) {
+            undoMoves = Arrays.copyOf(undoMoves, undoSize * 2);
+            undoCaptured = Arrays.copyOf(undoCaptured, undoSize * 2);
+            undoDisplaced = Arrays.copyOf(undoDisplaced, undoSize * 2);
+            undoCastlingRights = Arrays.copyOf(undoCastlingRights, undoSize * 2);
+            undoEnPassantSquares = Arrays.copyOf(undoEnPassantSquares, undoSize * 2);
+            undoHalfmoveClocks = Arrays.copyOf(undoHalfmoveClocks, undoSize * 2);
+            undoHashes = Arrays.copyOf(undoHashes, undoSize * 2);
+        }
+
+        undoCastlingRights[undoSize] = castlingRights;
+        undoEnPassantSquares[undoSize] = enPassantSquare;
+        undoHalfmoveClocks[undoSize] = halfmoveClock;
+        undoHashes[undoSize] = hash;
+
+        int from = Move.from(move), to = Move.to(move);
+        int piece = Move.piece(move);
+        int captured, displaced = NO_PIECE;
+
+        if (Move.hasFlag(move, Move.EN_PASSANT)) {
+            // the captured pawn stands beside the moving pawn, not on its destination
+            captured = remove(Bitboards.square(Bitboards.x(to), Bitboards.y(from)));
+            displaced = remove(to);
+        } else if (Move.hasFlag(move, Move.CASTLE)) {
+            // the rook jumps from its corner to the far side of the king
+            captured = remove(to);
+            displaced = remove(castlingRookSquare(to));
+            if (displaced != NO_PIECE) {
+                put(displaced, castledRookSquare(to));
+            }
+        } else {
+            captured = remove(to);
+        }
+
+        remove(from);
+        put(Move.promotion(move) != NO_PIECE ? Move.promotion(move) : piece, to);
+
+        setCastlingRights(castlingRights & CASTLING_MASKS[from] & CASTLING_MASKS[to]);
+
+        // a pawn moving two squares can be captured en passant on the square it skipped
+        if (typeOf(piece) == PAWN && Math.abs(Bitboards.y(to) - Bitboards.y(from)) == 2) {
+            setEnPassantSquare(Bitboards.square(Bitboards.x(from), (Bitboards.y(from) + Bitboards.y(to)) / 2));
+        } else {
+            setEnPassantSquare(NO_SQUARE);
+        }
+
+        // captures and pawn moves reset the fifty move rule
+        halfmoveClock = typeOf(piece) == PAWN || captured != NO_PIECE ? 0 : halfmoveClock + 1;
+        if (sideToMove == BLACK) {
+            fullmoveNumber++;
+        }
+
+        setSideToMove(1 - sideToMove);
+
+        undoMoves[undoSize] = move;
+        undoCaptured[undoSize] = captured;
+        undoDisplaced[undoSize] = displaced;
+        undoSize++;
+
+    }
+
+    /**
+     * Reverts the last move played with {@link #makeMove(int)}
+     *
+     * @throws IllegalStateException if there is no move to unmake
+     */
+    public void unmakeMove() {
+
+        if (undoSize == 0) {
+            throw new IllegalStateException("No move to unmake");
+        }
+
+        undoSize--;
+        int move = undoMoves[undoSize];
+        int captured = undoCaptured[undoSize];
+        int displaced = undoDisplaced[undoSize];
+
+        int from = Move.from(move), to = Move.to(move);
+
+        remove(to);
+        put(Move.piece(move), from);
+
+        if (Move.hasFlag(move, Move.EN_PASSANT)) {
+            if (captured != NO_PIECE) {
+                put(captured, Bitboards.square(Bitboards.x(to), Bitboards.y(from)));
+            }
+            if (displaced != NO_PIECE) {
+                put(displaced, to);
+            }
+        } else {
+            if (Move.hasFlag(move, Move.CASTLE) && displaced != NO_PIECE) {
+                remove(castledRookSquare(to));
+                put(displaced, castlingRookSquare(to));
+            }
+            if (captured != NO_PIECE) {
+                put(captured, to);
+            }
+        }
+
+        sideToMove = 1 - sideToMove;
+        castlingRights = undoCastlingRights[undoSize];
+        enPassantSquare = undoEnPassantSquares[undoSize];
+        halfmoveClock = undoHalfmoveClocks[undoSize];
+        if (sideToMove == BLACK) {
+            fullmoveNumber--;
+        }
+        hash = undoHashes[undoSize];
+
+    }
+
+    /**
+     * @param kingDest the square the castling king moves to
+     * @return the corner the rook castles from
+     */
+    private static int castlingRookSquare(int kingDest) {
+        return Bitboards.square(Bitboards.x(kingDest) < 4 ? 0 : 7, Bitboards.y(kingDest));
+    }
+
+    /**
+     * @param kingDest the square the castling king moves to
+     * @return the square the rook castles to, beside the king
+     */
+    private static int castledRookSquare(int kingDest) {
+        int x = Bitboards.x(kingDest);
+        return Bitboards.square(x + (x < 4 ? 1 : -1), Bitboards.y(kingDest));
+    }
+
+    // #endregion
+
+    /**
+     * Writes the piece placement of this Position in FEN, with the origin at the
+     * top-left
+     *
+     * @return the piece placement field of the FEN
+     * @see FEN#format(Position)
+     */
+    public String toFEN() {
+
+        StringBuilder fen = new StringBuilder(FEN.MAX_PLACEMENT_LENGTH);
+        FEN.writePlacement(this, fen);
+        return fen.toString();
+
+    }
+
+}
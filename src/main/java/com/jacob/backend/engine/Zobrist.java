@@ -0,0 +1,79 @@
+package com.jacob.backend.engine;
+
+/**
+ * Random 64-bit keys for Zobrist hashing. A position's hash is the XOR of the
+ * keys of its pieces, side to move, castling rights and en passant file, so a
+ * move only needs to XOR in and out the keys it changes.
+ * <p>
+ * The keys are generated from a fixed seed, since hashes are persisted and
+ * have to stay the same across restarts
+ */
+public final class Zobrist {
+
+    /**
+     * the seed of the generator, which must never change
+     */
+    private static final long SEED = 0x2545F4914F6CDD1DL;
+
+    /**
+     * one key per piece and square, indexed by piece then square
+     */
+    public static final long[][] PIECES = new long[12][64];
+
+    /**
+     * XORed in when black is to move
+     */
+    public static final long BLACK_TO_MOVE;
+
+    /**
+     * one key per combination of castling rights
+     */
+    public static final long[] CASTLING = new long[16];
+
+    /**
+     * one key per file of the en passant square
+     */
+    public static final long[] EN_PASSANT_FILE = new long[8];
+
+    static {
+        long state = SEED;
+
+        for (int piece = 0; piece < 12; piece++) {
+            for (int square = 0; square < 64; square++) {
+                state += 0x9E3779B97F4A7C15L;
+                PIECES[piece][square] = mix(state);
+            }
+        }
+
+        state += 0x9E3779B97F4A7C15L;
+        BLACK_TO_MOVE = mix(state);
+
+        // no castling rights hashes to nothing, like an empty square
+        for (int rights = 1; rights < 16; rights++) {
+            state += 0x9E3779B97F4A7C15L;
+            CASTLING[rights] = mix(state);
+        }
+
+        for (int file = 0; file < 8; file++) {
+            state += 0x9E3779B97F4A7C15L;
+            EN_PASSANT_FILE[file] = mix(state);
+        }
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * The SplitMix64 finalizer, written out so the keys don't depend on the
+     * implementation of a library generator
+     *
+     * @param z the generator state
+     * @return the next key
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.jacob.backend.repository;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.stereotype.Repository;
+
+import com.jacob.backend.data.Model.GameMove;
+import com.jacob.backend.repository.interfaces.GameMoveRepositoryInterface;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.transaction.Transactional;
+import lombok.extern.apachecommons.CommonsLog;
+
+@Repository
+@CommonsLog
+public class GameMoveRepository implements GameMoveRepositoryInterface {
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    public List<GameMove> getAllByGameId(UUID gameId) {
+        return getRangeByGameId(gameId, 0, Integer.MAX_VALUE);
+    }
+
+    public List<GameMove> getRangeByGameId(UUID gameId, int fromPly, int toPly) {
+        try {
+            String qString = "SELECT m FROM GameMove m WHERE m.gameId = :gameId AND m.ply >= :fromPly AND m.ply < :toPly ORDER BY m.ply";
+            TypedQuery<GameMove> query = entityManager.createQuery(qString, GameMove.class);
+            return query.setParameter("gameId", gameId)
+                    .setParameter("fromPly", fromPly)
+                    .setParameter("toPly", toPly)
+                    .getResultList();
+        } catch (Exception e) {
+            log.error("Failed to get 'GameMoves' from database", e);
+            throw e;
+        }
+    }
+
+    @Transactional
+    public void saveAll(List<GameMove> moves) {
+        try {
+            // the inserts are sent in JDBC batches when the transaction commits
+            for (GameMove move : moves) {
+                entityManager.persist(move);
+            }
+        } catch (Exception e) {
+            log.error("Failed to save 'GameMoves' to database", e);
+            throw e;
+        }
+    }
+}
@@ -1,16 +1,26 @@
 package com.jacob.backend.repository;
 
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
+import org.hibernate.query.NativeQuery;
 import org.springframework.stereotype.Repository;
 
+import com.jacob.backend.data.Converter.GameResultConverter;
+import com.jacob.backend.data.DTO.GameSummaryDTO;
+import com.jacob.backend.data.Generator.UuidV7Generator;
 import com.jacob.backend.data.Model.Game;
+import com.jacob.backend.data.Model.GameMove;
 import com.jacob.backend.repository.interfaces.GameRepositoryInterface;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
-import jakarta.persistence.TypedQuery;
+import jakarta.persistence.Query;
+import jakarta.persistence.Tuple;
 import jakarta.transaction.Transactional;
 import lombok.extern.apachecommons.CommonsLog;
 
@@ -18,29 +28,127 @@ import lombok.extern.apachecommons.CommonsLog;
 @CommonsLog
 public class GameRepository implements GameRepositoryInterface {
 
+    /**
+     * How far the date of a Game can be from the time in its UUID. The date is
+     * set when the Game is created, just before its UUID is made as it is first
+     * saved, so the two differ by far less
+     */
+    private static final long ID_DATE_WINDOW_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * The columns of games read into a {@link GameSummaryDTO}
+     */
+    private static final String SUMMARY_COLUMNS = "id, white_player_username, black_player_username, result, "
+            + "time_control, date, ply_count";
+
+    /**
+     * The columns of games copied to games_archive when a Game is archived.
+     * Columns added to games must be added here, and to games_archive
+     */
+    private static final String ARCHIVE_COLUMNS = "id, fen, zobrist_key, castling_rights, en_passant_square, "
+            + "halfmove_clock, ply_count, moves, move_times, move_data, time_control, white_player_id, "
+            + "black_player_id, white_player_username, black_player_username, result, date, finished_at";
+
     @PersistenceContext
     EntityManager entityManager;
 
     public Game getById(UUID gameId) {
         try {
-            return entityManager.find(Game.class, gameId);
+            Game game = entityManager.find(Game.class, gameId);
+            if (game != null) {
+                return game;
+            }
+
+            // The archive is partitioned by month of date, so when the UUID holds
+            // the time the Game was saved, only the partitions around it are read
+            Date idDate = UuidV7Generator.dateOf(gameId);
+            String qString = "SELECT * FROM games_archive WHERE id = :gameId"
+                    + (idDate != null ? " AND date BETWEEN :fromDate AND :toDate" : "");
+            Query query = entityManager.createNativeQuery(qString, Game.class).setParameter("gameId", gameId);
+            if (idDate != null) {
+                query.setParameter("fromDate", new Date(idDate.getTime() - ID_DATE_WINDOW_MILLIS))
+                        .setParameter("toDate", new Date(idDate.getTime() + ID_DATE_WINDOW_MILLIS));
+            }
+            @SuppressWarnings("unchecked")
+            List<Game> archived = query.getResultList();
+            return archived.isEmpty() ? null : archived.get(0);
         } catch (Exception e) {
             log.error("Failed to get 'Game' from database", e);
             throw e;
         }
     }
 
-    public List<Game> getAllByUserId(UUID userId) {
+    public List<GameSummaryDTO> getActiveByUserId(UUID userId) {
+        try {
+            // The result of games in progress is written into the query rather
+            // than bound, so the planner can match it to the partial indexes of
+            // games in progress
+            String qString = "SELECT " + SUMMARY_COLUMNS + " FROM games "
+                    + "WHERE (white_player_id = :userId OR black_player_id = :userId) AND result = 0 "
+                    + "ORDER BY date DESC";
+            Query query = entityManager.createNativeQuery(qString, Tuple.class).setParameter("userId", userId);
+            @SuppressWarnings("unchecked")
+            List<Tuple> rows = query.getResultList();
+            return toSummaries(rows);
+        } catch (Exception e) {
+            log.error("Failed to get 'Game' summaries from database", e);
+            throw e;
+        }
+    }
+
+    public List<GameSummaryDTO> getPageByUserId(UUID userId, Date beforeDate, UUID beforeId, int limit) {
         try {
-            String qString = "SELECT g FROM Game g WHERE g.whitePlayerId = :userId OR g.blackPlayerId = :userId";
-            TypedQuery<Game> query = entityManager.createQuery(qString, Game.class);
-            return query.setParameter("userId", userId).getResultList();
+            // Each side, of the live Games and of the archive, is a range scan of
+            // its player's index, and only the newest of the four are kept. A game
+            // against oneself is only read as white. The archive's partitions are
+            // read newest first, and only until the page is full, and those after
+            // the cursor are skipped. Only the summary columns are read, into
+            // tuples rather than entities, so nothing is kept in the persistence
+            // context
+            String after = beforeDate != null ? " AND (date, id) < (:beforeDate, :beforeId)" : "";
+            List<String> sides = new ArrayList<>();
+            for (String table : List.of("games", "games_archive")) {
+                sides.add("(SELECT " + SUMMARY_COLUMNS + " FROM " + table + " WHERE white_player_id = :userId"
+                        + after
+                        + " ORDER BY date DESC, id DESC LIMIT :limit)");
+                sides.add("(SELECT " + SUMMARY_COLUMNS + " FROM " + table + " WHERE black_player_id = :userId"
+                        + " AND white_player_id <> :userId" + after
+                        + " ORDER BY date DESC, id DESC LIMIT :limit)");
+            }
+            String qString = "SELECT " + SUMMARY_COLUMNS + " FROM (" + String.join(" UNION ALL ", sides)
+                    + ") g ORDER BY date DESC, id DESC LIMIT :limit";
+            Query query = entityManager.createNativeQuery(qString, Tuple.class)
+                    .setParameter("userId", userId)
+                    .setParameter("limit", limit);
+            if (beforeDate != null) {
+                query.setParameter("beforeDate", beforeDate).setParameter("beforeId", beforeId);
+            }
+            @SuppressWarnings("unchecked")
+            List<Tuple> rows = query.getResultList();
+            return toSummaries(rows);
         } catch (Exception e) {
-            log.error("Failed to get 'Games' from database", e);
+            log.error("Failed to get 'Game' summaries from database", e);
             throw e;
         }
     }
 
+    /**
+     * Reads rows of {@link #SUMMARY_COLUMNS} into summaries
+     * 
+     * @param rows the rows, in the order of the summaries
+     * @return the summaries
+     */
+    private List<GameSummaryDTO> toSummaries(List<Tuple> rows) {
+        return rows.stream().map(row -> new GameSummaryDTO(
+                row.get("id", UUID.class),
+                row.get("white_player_username", String.class),
+                row.get("black_player_username", String.class),
+                GameResultConverter.toResult(row.get("result", Short.class)),
+                row.get("time_control", String.class),
+                row.get("date", Date.class),
+                row.get("ply_count", Integer.class))).toList();
+    }
+
     @Transactional
     public void save(Game game) {
         try {
@@ -60,4 +168,91 @@ public class GameRepository implements GameRepositoryInterface {
             throw e;
         }
     }
+
+    @Transactional
+    public void createArchivePartitions(Date finishedBefore) {
+        try {
+            // Nodes making partitions wait for each other, so two never make the
+            // same one at once. The lock is released when the transaction ends
+            entityManager.createNativeQuery("SELECT 1 FROM pg_advisory_xact_lock(hashtext('games_archive'))")
+                    .getSingleResult();
+
+            // Each month of the archive is a partition, made before the first Game
+            // of that month is moved. The statements only touch Games, so the rest
+            // of the second-level cache is kept
+            String qString = "SELECT DISTINCT to_char(date AT TIME ZONE 'UTC', 'YYYY-MM') AS month FROM games"
+                    + " WHERE finished_at < :finishedBefore";
+            @SuppressWarnings("unchecked")
+            List<Tuple> rows = entityManager.createNativeQuery(qString, Tuple.class)
+                    .setParameter("finishedBefore", finishedBefore)
+                    .getResultList();
+            for (Tuple row : rows) {
+                YearMonth month = YearMonth.parse(row.get("month", String.class));
+                entityManager.createNativeQuery(String.format(
+                        "CREATE TABLE IF NOT EXISTS games_archive_%d_%02d PARTITION OF games_archive"
+                                + " FOR VALUES FROM ('%s-01 00:00:00+00') TO ('%s-01 00:00:00+00')",
+                        month.getYear(), month.getMonthValue(), month, month.plusMonths(1)))
+                        .unwrap(NativeQuery.class).addSynchronizedEntityClass(Game.class)
+                        .executeUpdate();
+            }
+        } catch (Exception e) {
+            log.error("Failed to create 'Game' archive partitions in database", e);
+            throw e;
+        }
+    }
+
+    @Transactional
+    public int archiveFinished(Date finishedBefore, int limit) {
+        try {
+            // Lock a batch of the Games that ended longest ago, skipping any that
+            // another node is moving
+            String qString = "SELECT id FROM games WHERE finished_at < :finishedBefore"
+                    + " ORDER BY finished_at LIMIT :limit FOR UPDATE SKIP LOCKED";
+            @SuppressWarnings("unchecked")
+            List<Tuple> rows = entityManager.createNativeQuery(qString, Tuple.class)
+                    .setParameter("finishedBefore", finishedBefore)
+                    .setParameter("limit", limit)
+                    .getResultList();
+            if (rows.isEmpty()) {
+                return 0;
+            }
+
+            // Move the rows in one statement, removing the GameMoves of those whose
+            // moves are encoded on them, since they are no longer read. The
+            // statement only touches Games and GameMoves, so the rest of the
+            // second-level cache is kept
+            List<UUID> gameIds = rows.stream().map(row -> row.get("id", UUID.class)).toList();
+            String moveString = "WITH moved AS (DELETE FROM games WHERE id IN (:gameIds) RETURNING "
+                    + ARCHIVE_COLUMNS + "), encoded AS (DELETE FROM game_moves"
+                    + " WHERE game_id IN (SELECT id FROM moved WHERE move_data IS NOT NULL))"
+                    + " INSERT INTO games_archive (" + ARCHIVE_COLUMNS + ") SELECT " + ARCHIVE_COLUMNS
+                    + " FROM moved";
+            return entityManager.createNativeQuery(moveString).setParameter("gameIds", gameIds)
+                    .unwrap(NativeQuery.class)
+                    .addSynchronizedEntityClass(Game.class)
+                    .addSynchronizedEntityClass(GameMove.class)
+                    .executeUpdate();
+        } catch (Exception e) {
+            log.error("Failed to archive 'Games' in database", e);
+            throw e;
+        }
+    }
+
+    @Transactional
+    public void updateAll(List<Game> games) {
+        try {
+            // Load the stored Games in one query, so merging doesn't select each one
+            List<UUID> gameIds = games.stream().map(game -> UUID.fromString(game.getId())).toList();
+            String qString = "SELECT g FROM Game g WHERE g.id IN :gameIds";
+            entityManager.createQuery(qString, Game.class).setParameter("gameIds", gameIds).getResultList();
+
+            // the updates are sent in JDBC batches when the transaction commits
+            for (Game game : games) {
+                entityManager.merge(game);
+            }
+        } catch (Exception e) {
+            log.error("Failed to update 'Games' in database", e);
+            throw e;
+        }
+    }
 }
@@ -2,8 +2,10 @@ package com.jacob.backend.repository;
 
 import java.util.UUID;
 
+import org.hibernate.query.NativeQuery;
 import org.springframework.stereotype.Repository;
 
+import com.jacob.backend.data.Generator.UuidV7Generator;
 import com.jacob.backend.data.Model.Session;
 import com.jacob.backend.repository.interfaces.SessionRepositoryInterface;
 
@@ -33,7 +35,7 @@ public class SessionRepository implements SessionRepositoryInterface {
     @Override
     public Session getByUsername(String username) {
         try {
-            String qString = "SELECT s FROM Session s WHERE s.username LIKE :username";
+            String qString = "SELECT s FROM Session s WHERE s.username = :username";
             TypedQuery<Session> query = entityManager.createQuery(qString, Session.class);
             return query.setParameter("username", username).getResultStream().findFirst().orElse(null);
         } catch (Exception e) {
@@ -45,7 +47,7 @@ public class SessionRepository implements SessionRepositoryInterface {
     @Override
     public boolean sessionExistsForUsername(String username) {
         try {
-            String qString = "SELECT s FROM Session s WHERE s.username LIKE :username";
+            String qString = "SELECT s FROM Session s WHERE s.username = :username";
             TypedQuery<Session> query = entityManager.createQuery(qString, Session.class);
             return query.setParameter("username", username).getResultList().size() > 0;
         } catch (Exception e) {
@@ -65,6 +67,28 @@ public class SessionRepository implements SessionRepositoryInterface {
         }
     }
 
+    @Override
+    @Transactional
+    public UUID upsertByUsername(String username) {
+        try {
+            UUID sessionId = UuidV7Generator.next();
+            String qString = "INSERT INTO sessions (id, username) VALUES (:id, :username) "
+                    + "ON CONFLICT (username) DO UPDATE "
+                    + "SET id = EXCLUDED.id, current_game_id = NULL, online_status = NULL";
+            // the statement only touches Sessions, so the rest of the second-level
+            // cache is kept
+            entityManager.createNativeQuery(qString)
+                    .setParameter("id", sessionId)
+                    .setParameter("username", username)
+                    .unwrap(NativeQuery.class).addSynchronizedEntityClass(Session.class)
+                    .executeUpdate();
+            return sessionId;
+        } catch (Exception e) {
+            log.error("Failed to save 'Session' to database", e);
+            throw e;
+        }
+    }
+
     @Override
     @Transactional
     public void update(Session session) {
@@ -3,12 +3,17 @@ package com.jacob.backend.repository;
 import java.util.List;
 import java.util.UUID;
 
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
 import org.springframework.stereotype.Repository;
 
+import com.jacob.backend.data.DTO.UserCredentialsDTO;
 import com.jacob.backend.data.Model.User;
 import com.jacob.backend.repository.interfaces.UserRepositoryInterface;
 
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.NoResultException;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.TypedQuery;
 import jakarta.transaction.Transactional;
@@ -46,9 +51,7 @@ public class UserRepository implements UserRepositoryInterface {
     @Override
     public boolean userExists(String username) {
         try {
-            String qString = "SELECT u FROM User u WHERE u.username LIKE :username";
-            TypedQuery<User> query = entityManager.createQuery(qString, User.class);
-            return query.setParameter("username", username).getResultList().size() > 0;
+            return loadByUsername(username) != null;
         } catch (Exception e) {
             log.error("Failed to get 'User' from database", e);
             throw e;
@@ -78,9 +81,11 @@ public class UserRepository implements UserRepositoryInterface {
     @Override
     public User getByUsername(String username) {
         try {
-            String qString = "SELECT u FROM User u WHERE u.username LIKE :username";
-            TypedQuery<User> query = entityManager.createQuery(qString, User.class);
-            return query.setParameter("username", username).getSingleResult();
+            User user = loadByUsername(username);
+            if (user == null) {
+                throw new NoResultException("No 'User' with username: " + username);
+            }
+            return user;
         } catch (Exception e) {
             log.error("Failed to get 'User.username' from database", e);
             throw e;
@@ -88,25 +93,31 @@ public class UserRepository implements UserRepositoryInterface {
     }
 
     @Override
-    public String getUserHash(String username) {
-        try {
-            String qString = "SELECT u.passwordHash FROM User u WHERE u.username LIKE :username";
-            TypedQuery<String> query = entityManager.createQuery(qString, String.class);
-            return query.setParameter("username", username).getSingleResult();
-        } catch (Exception e) {
-            log.error("Failed to get 'User.passwordHash' from database", e);
-            throw e;
-        }
+    public CacheRegionStatistics getCacheStats() {
+        return entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics()
+                .getDomainDataRegionStatistics(User.CACHE_REGION);
+    }
+
+    /**
+     * Looks up a User by its natural id, which is served from the second-level
+     * cache once the username has been seen
+     * 
+     * @param username the username of the User
+     * @return the User, or null if there is none
+     */
+    private User loadByUsername(String username) {
+        return entityManager.unwrap(Session.class).bySimpleNaturalId(User.class).load(username);
     }
 
     @Override
-    public String getUserSalt(String username) {
+    public UserCredentialsDTO getCredentials(String username) {
         try {
-            String qString = "SELECT u.passwordSalt FROM User u WHERE u.username LIKE :username";
-            TypedQuery<String> query = entityManager.createQuery(qString, String.class);
-            return query.setParameter("username", username).getSingleResult();
+            String qString = "SELECT new com.jacob.backend.data.DTO.UserCredentialsDTO(u.id, u.passwordHash, u.passwordSalt) "
+                    + "FROM User u WHERE u.username = :username";
+            TypedQuery<UserCredentialsDTO> query = entityManager.createQuery(qString, UserCredentialsDTO.class);
+            return query.setParameter("username", username).getResultStream().findFirst().orElse(null);
         } catch (Exception e) {
-            log.error("Failed to get 'User.passwordSalt' from database", e);
+            log.error("Failed to get 'User' credentials from database", e);
             throw e;
         }
     }
@@ -0,0 +1,36 @@
+package com.jacob.backend.repository.interfaces;
+
+import java.util.List;
+import java.util.UUID;
+
+import com.jacob.backend.data.Model.GameMove;
+
+public interface GameMoveRepositoryInterface {
+
+    /**
+     * Gets the moves of the game with the given {@code UUID}, in order
+     * 
+     * @param gameId the UUID of the game
+     * @return the {@link GameMove GameMoves} of the game, by ply
+     */
+    public List<GameMove> getAllByGameId(UUID gameId);
+
+    /**
+     * Gets the moves of the game with the given {@code UUID} from one ply up to,
+     * but not including, another, in order
+     * 
+     * @param gameId  the UUID of the game
+     * @param fromPly the first ply to get
+     * @param toPly   the ply to stop before
+     * @return the {@link GameMove GameMoves} in the range, by ply
+     */
+    public List<GameMove> getRangeByGameId(UUID gameId, int fromPly, int toPly);
+
+    /**
+     * Appends the given {@link GameMove GameMoves} in the database, in as few
+     * statements as the JDBC batch size allows
+     * 
+     * @param moves the moves to append
+     */
+    public void saveAll(List<GameMove> moves);
+}
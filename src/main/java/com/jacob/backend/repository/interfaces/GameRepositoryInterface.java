@@ -1,14 +1,17 @@
 package com.jacob.backend.repository.interfaces;
 
+import java.util.Date;
 import java.util.List;
 import java.util.UUID;
 
+import com.jacob.backend.data.DTO.GameSummaryDTO;
 import com.jacob.backend.data.Model.Game;
 
 public interface GameRepositoryInterface {
 
     /**
-     * Gets the game with the given {@code UUID}
+     * Gets the game with the given {@code UUID}, from the live games, or else
+     * from the archive
      * 
      * @param gameId the UUID of the game to get from the database
      * @return the {@link Game} if it exists, otherwise null
@@ -16,12 +19,31 @@ public interface GameRepositoryInterface {
     public Game getById(UUID gameId);
 
     /**
-     * Gets all of the games for the user with the given {@code UUID}
+     * Gets summaries of the games in progress for the user with the given
+     * {@code UUID}, from the indexes of games in progress. Games in progress are
+     * never archived, so only the live games are read
      * 
-     * @param userId the UUID of the user for whom to get all games from the db
-     * @return the list of {@link Game Games} for the user
+     * @param userId the UUID of the user for whom to get games
+     * @return the {@link GameSummaryDTO GameSummaries}, newest first
      */
-    public List<Game> getAllByUserId(UUID userId);
+    public List<GameSummaryDTO> getActiveByUserId(UUID userId);
+
+    /**
+     * Gets a page of summaries of the games for the user with the given
+     * {@code UUID}, newest first. Pages are found by the date and UUID of the last
+     * game of the page before, so each page is a range scan however far back it
+     * is
+     * 
+     * @param userId     the UUID of the user for whom to get games
+     * @param beforeDate the date of the last game of the page before, or null for
+     *                   the first page
+     * @param beforeId   the UUID of the last game of the page before, or null for
+     *                   the first page
+     * @param limit      the most games to get
+     * @return the page of {@link GameSummaryDTO GameSummaries}, by date then UUID,
+     *         descending
+     */
+    public List<GameSummaryDTO> getPageByUserId(UUID userId, Date beforeDate, UUID beforeId, int limit);
 
     /**
      * Saves the given {@link Game} in the database
@@ -36,4 +58,34 @@ public interface GameRepositoryInterface {
      * @param game the game to update
      */
     public void update(Game game);
+
+    /**
+     * Updates the given {@link Game Games} in the database together, in as few
+     * statements as the JDBC batch size allows
+     * 
+     * @param games the games to update
+     */
+    public void updateAll(List<Game> games);
+
+    /**
+     * Makes the partitions of the archive that the games which ended before the
+     * given date go in, in a transaction of its own, so it holds no locks on
+     * the games. Nodes making the same partitions at once wait for each other
+     * 
+     * @param finishedBefore the date the games must have ended before
+     */
+    public void createArchivePartitions(Date finishedBefore);
+
+    /**
+     * Moves games that ended before the given date from the live games to the
+     * archive, in one transaction, removing the moves in game_moves of those
+     * whose moves are encoded on them. Games being moved by
+     * another transaction are skipped. Their partitions must have been made by
+     * {@link #createArchivePartitions(Date)}
+     * 
+     * @param finishedBefore the date the games must have ended before
+     * @param limit          the most games to move
+     * @return the number of games moved
+     */
+    public int archiveFinished(Date finishedBefore, int limit);
 }
@@ -37,6 +37,15 @@ public interface SessionRepositoryInterface {
      */
     public void save(Session session);
 
+    /**
+     * Creates a new session for the given username in a single statement,
+     * replacing the user's existing session if there is one
+     * 
+     * @param username the username to store in the session
+     * @return the UUID of the new session
+     */
+    public UUID upsertByUsername(String username);
+
     /**
      * updates the session object
      * 
@@ -3,6 +3,9 @@ package com.jacob.backend.repository.interfaces;
 import java.util.List;
 import java.util.UUID;
 
+import org.hibernate.stat.CacheRegionStatistics;
+
+import com.jacob.backend.data.DTO.UserCredentialsDTO;
 import com.jacob.backend.data.Model.User;
 
 public interface UserRepositoryInterface {
@@ -43,7 +46,8 @@ public interface UserRepositoryInterface {
     public User getById(UUID userId);
 
     /**
-     * returns the user object associated with the given username
+     * returns the user object associated with the given username, from the
+     * second-level cache if it has been looked up before
      * 
      * @param username the Username of the user to get
      * @return the User
@@ -51,18 +55,16 @@ public interface UserRepositoryInterface {
     public User getByUsername(String username);
 
     /**
-     * returns the password hash for the given user
-     * 
-     * @param username the username of the user whose hash we want
-     * @return the hash
+     * @return the hit, miss and put counts of the second-level cache of users
      */
-    public String getUserHash(String username);
+    public CacheRegionStatistics getCacheStats();
 
     /**
-     * returns teh password salt for the given user
+     * returns the id, password hash and password salt of the given user, in a
+     * single query
      * 
-     * @param username the username of the user whose salt we want
-     * @return the salt
+     * @param username the username of the user whose credentials we want
+     * @return the credentials, or null if there is no such user
      */
-    public String getUserSalt(String username);
+    public UserCredentialsDTO getCredentials(String username);
 }
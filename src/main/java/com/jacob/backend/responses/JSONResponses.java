@@ -2,11 +2,31 @@ package com.jacob.backend.responses;
 
 import java.util.HashMap;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.google.gson.ExclusionStrategy;
+import com.google.gson.FieldAttributes;
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
 
 public class JSONResponses {
 
+    /**
+     * Serializes responses, leaving out fields marked {@link JsonIgnore}, such as
+     * the stored forms of a Game's moves
+     */
+    private static final Gson GSON = new GsonBuilder()
+            .setExclusionStrategies(new ExclusionStrategy() {
+                public boolean shouldSkipField(FieldAttributes field) {
+                    return field.getAnnotation(JsonIgnore.class) != null;
+                }
+
+                public boolean shouldSkipClass(Class<?> type) {
+                    return false;
+                }
+            })
+            .create();
+
     public static String success() {
         JsonObject success = new JsonObject();
         success.addProperty("msg", "success");
@@ -30,13 +50,13 @@ public class JSONResponses {
     }
 
     public static String toJson(Object src) {
-        return new Gson().toJson(src);
+        return GSON.toJson(src);
     }
 
     public static String toJson(String key, Object value) {
         HashMap<String, Object> obj = new HashMap<>();
         obj.put(key, value);
-        return new Gson().toJson(obj);
+        return GSON.toJson(obj);
     }
 
 }
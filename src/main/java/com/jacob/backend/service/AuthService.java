@@ -7,6 +7,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import com.jacob.backend.data.DTO.CredentialsDTO;
+import com.jacob.backend.data.DTO.UserCredentialsDTO;
 import com.jacob.backend.data.Model.User;
 import com.jacob.backend.repository.interfaces.UserRepositoryInterface;
 import com.jacob.backend.responses.exceptions.AlreadyFoundException;
@@ -32,15 +33,16 @@ public class AuthService {
             throw new MissingFieldException("Login Credentials", "username");
         } else if (pass == null) {
             throw new MissingFieldException("Login Credentials", "password");
-        } else if (!userRepo.userExists(username)) {
+        }
+
+        UserCredentialsDTO credentials = userRepo.getCredentials(username);
+        if (credentials == null) {
             throw new InvalidCredentialsException("username");
         }
 
-        String passwordHash = userRepo.getUserHash(username);
-        String passwordSalt = userRepo.getUserSalt(username);
-        String passwordHashAttempt = getPasswordHash(pass + passwordSalt);
+        String passwordHashAttempt = getPasswordHash(pass + credentials.getPasswordSalt());
 
-        if (!passwordHashAttempt.equals(passwordHash)) {
+        if (!passwordHashAttempt.equals(credentials.getPasswordHash())) {
             throw new InvalidCredentialsException("password");
         }
 
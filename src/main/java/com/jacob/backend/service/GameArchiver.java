@@ -0,0 +1,157 @@
+package com.jacob.backend.service;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.ToIntBiFunction;
+
+import lombok.extern.apachecommons.CommonsLog;
+
+/**
+ * Background job moving finished Games out of the table of live Games and into
+ * the archive. On each run, the partitions of the archive the Games go in are
+ * made first, in their own transaction, then Games are moved a batch at a
+ * time, each batch in its own transaction, until a batch comes back less than
+ * full. Keeping batches small keeps each transaction short, so moving years of
+ * history doesn't hold up the Games being played
+ */
+@CommonsLog
+public class GameArchiver {
+
+    // #region variables
+
+    /**
+     * makes the partitions of the archive for the Games that ended before the
+     * given date
+     */
+    private final Consumer<Date> partitioner;
+
+    /**
+     * moves at most the given number of Games that ended before the given date
+     * to the archive, and returns how many it moved
+     */
+    private final ToIntBiFunction<Date, Integer> archiver;
+
+    /**
+     * how long a Game stays in the table of live Games after it ends
+     */
+    private final Duration delay;
+
+    /**
+     * the most Games moved in one transaction
+     */
+    private final int batchSize;
+
+    /**
+     * how long to wait between runs
+     */
+    private final Duration interval;
+
+    /**
+     * runs the job on the interval, once started
+     */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * if the job has been shut down, so a run in progress stops after its batch
+     */
+    private volatile boolean stopped;
+
+    // #endregion
+
+    /**
+     * Creates a new GameArchiver, which does nothing until started
+     *
+     * @param partitioner makes the partitions of the archive for the Games that
+     *                    ended before the given date, in one transaction
+     * @param archiver    moves at most the given number of Games that ended
+     *                    before the given date to the archive in one
+     *                    transaction, returning how many it moved
+     * @param delay       how long a Game stays in the table of live Games after
+     *                    it ends
+     * @param batchSize   the most Games moved in one transaction
+     * @param interval    how long to wait between runs
+     */
+    public GameArchiver(Consumer<Date> partitioner, ToIntBiFunction<Date, Integer> archiver, Duration delay,
+            int batchSize, Duration interval) {
+        this.partitioner = partitioner;
+        this.archiver = archiver;
+        this.delay = delay;
+        this.batchSize = batchSize;
+        this.interval = interval;
+    }
+
+    /**
+     * Starts running the job on the interval, the first time after one interval
+     */
+    public synchronized void start() {
+
+        if (scheduler != null || stopped) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "game-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::run, interval.toMillis(), interval.toMillis(),
+                TimeUnit.MILLISECONDS);
+
+    }
+
+    /**
+     * Moves the Games that ended long enough ago to the archive, a batch at a
+     * time, until there are no more to move. The cutoff is fixed for the run, so
+     * every Game it moves has a partition made for it beforehand
+     *
+     * @return the number of Games moved
+     */
+    public int archive() {
+
+        Date finishedBefore = new Date(System.currentTimeMillis() - delay.toMillis());
+
+        partitioner.accept(finishedBefore);
+
+        int total = 0;
+        int moved;
+        do {
+            moved = archiver.applyAsInt(finishedBefore, batchSize);
+            total += moved;
+        } while (moved >= batchSize && !stopped);
+
+        return total;
+
+    }
+
+    /**
+     * Stops running the job, letting a batch in progress finish
+     */
+    public synchronized void shutdown() {
+
+        stopped = true;
+
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+
+    }
+
+    /**
+     * Runs the job from the scheduler, which stops running it if it throws
+     */
+    private void run() {
+        try {
+            int moved = archive();
+            if (moved > 0) {
+                log.info("Archived " + moved + " finished 'Games'");
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to archive finished 'Games', retrying on the next run", e);
+        }
+    }
+
+}
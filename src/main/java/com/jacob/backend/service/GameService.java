@@ -1,27 +1,111 @@
 package com.jacob.backend.service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import com.jacob.backend.data.DTO.GamePageDTO;
+import com.jacob.backend.data.DTO.GameSummaryDTO;
 import com.jacob.backend.data.DTO.MoveDTO;
+import com.jacob.backend.data.DTO.PerftDTO;
 import com.jacob.backend.data.Model.Game;
+import com.jacob.backend.data.Model.GameMove;
 import com.jacob.backend.data.Model.User;
+import com.jacob.backend.engine.Bitboards;
+import com.jacob.backend.engine.FEN;
+import com.jacob.backend.engine.IntMoveList;
+import com.jacob.backend.engine.LegalMoveMasks;
+import com.jacob.backend.engine.Move;
+import com.jacob.backend.engine.MoveListCodec;
+import com.jacob.backend.engine.Position;
+import com.jacob.backend.repository.interfaces.GameMoveRepositoryInterface;
 import com.jacob.backend.repository.interfaces.GameRepositoryInterface;
 import com.jacob.backend.responses.exceptions.MissingFieldException;
 import com.jacob.backend.responses.exceptions.NotFoundException;
 import com.jacob.backend.responses.exceptions.UnauthorizedException;
+import com.jacob.backend.service.LiveGameRegistry.LiveGame;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 /**
  * Service containing Game related logic
  */
 @Service
-public class GameService {
+public class GameService implements MeterBinder {
+
+    /**
+     * The most positions to keep the valid moves of
+     */
+    private static final long VALID_MOVES_CACHE_SIZE = 10_000;
+
+    /**
+     * How long a game in progress is kept in memory after its last move
+     */
+    private static final Duration LIVE_GAME_IDLE_TIMEOUT = Duration.ofMinutes(30);
+
+    /**
+     * The most Game updates written together, matching the JDBC batch size
+     */
+    private static final int GAME_WRITE_BATCH_SIZE = 50;
+
+    /**
+     * The most moves waiting to be written before moves are rejected
+     */
+    private static final int GAME_WRITE_CAPACITY = 10_000;
+
+    /**
+     * How long a move waits for the writes to catch up before it is rejected
+     */
+    private static final Duration GAME_WRITE_OFFER_TIMEOUT = Duration.ofSeconds(2);
+
+    /**
+     * How often waiting Game updates are written
+     */
+    private static final Duration GAME_WRITE_INTERVAL = Duration.ofMillis(500);
+
+    /**
+     * How long stopping the application keeps trying Game updates that fail
+     */
+    private static final Duration GAME_WRITE_SHUTDOWN_TIMEOUT = Duration.ofSeconds(30);
+
+    /**
+     * The most Games returned in one page of a User's Games
+     */
+    private static final int GAME_PAGE_MAX_SIZE = 100;
+
+    /**
+     * How long a Game stays in the table of live Games after it ends, well past
+     * any of its updates still waiting to be written
+     */
+    private static final Duration GAME_ARCHIVE_DELAY = Duration.ofDays(1);
+
+    /**
+     * The most finished Games moved to the archive in one transaction
+     */
+    private static final int GAME_ARCHIVE_BATCH_SIZE = 500;
+
+    /**
+     * How often finished Games are moved to the archive
+     */
+    private static final Duration GAME_ARCHIVE_INTERVAL = Duration.ofMinutes(10);
 
     /**
      * Repo for Game persistence
@@ -29,6 +113,12 @@ public class GameService {
     @Autowired
     private GameRepositoryInterface gameRepo;
 
+    /**
+     * Repo for the moves of each Game
+     */
+    @Autowired
+    private GameMoveRepositoryInterface gameMoveRepo;
+
     /**
      * Service for User related logic
      */
@@ -42,6 +132,34 @@ public class GameService {
     @Autowired
     private SessionService sessionService;
 
+    /**
+     * Valid moves of recently seen positions, so repeated requests for the same
+     * position don't generate them again
+     */
+    private final ValidMovesCache validMovesCache = new ValidMovesCache(VALID_MOVES_CACHE_SIZE);
+
+    /**
+     * Games in progress, so moves are applied in memory instead of reading the
+     * Game from the database each time
+     */
+    private final LiveGameRegistry liveGames = new LiveGameRegistry(LIVE_GAME_IDLE_TIMEOUT);
+
+    /**
+     * Moves and the Game updates they make, written in batches behind the
+     * requests
+     */
+    private final GameWriteBehind gameWrites = new GameWriteBehind(moves -> gameMoveRepo.saveAll(moves),
+            games -> gameRepo.updateAll(games), GAME_WRITE_BATCH_SIZE, GAME_WRITE_CAPACITY,
+            GAME_WRITE_OFFER_TIMEOUT, GAME_WRITE_INTERVAL, GAME_WRITE_SHUTDOWN_TIMEOUT);
+
+    /**
+     * Moves Games that ended long enough ago to the archive, in the background
+     */
+    private final GameArchiver gameArchiver = new GameArchiver(
+            finishedBefore -> gameRepo.createArchivePartitions(finishedBefore),
+            (finishedBefore, limit) -> gameRepo.archiveFinished(finishedBefore, limit),
+            GAME_ARCHIVE_DELAY, GAME_ARCHIVE_BATCH_SIZE, GAME_ARCHIVE_INTERVAL);
+
     // #region CRUD
 
     /**
@@ -52,31 +170,80 @@ public class GameService {
      */
     public Game findById(UUID gameId) {
 
-        // Find and return the Game with the given UUID
-        return gameRepo.getById(gameId);
+        // Games in progress are kept in memory, and are copied so callers don't
+        // see them change mid-read
+        LiveGame liveGame = liveGames.get(gameId);
+        if (liveGame != null) {
+            Game game = liveGame.game();
+            synchronized (game) {
+                return new Game(game);
+            }
+        }
+
+        // as are updates that haven't been written yet
+        Game unwritten = gameWrites.get(gameId);
+        if (unwritten != null) {
+            return new Game(unwritten);
+        }
+
+        // Find the Game with the given UUID
+        Game game = gameRepo.getById(gameId);
+
+        // Read its moves in order, decoding them if it has finished
+        if (game != null && game.getMoveData() != null) {
+            decodeMoves(game);
+        } else if (game != null) {
+            List<GameMove> gameMoves = gameMoveRepo.getAllByGameId(gameId);
+            int replayed = replayUnwrittenMoves(game, gameMoves);
+            appendMoves(game, gameMoves);
+            // write the Game again, so its row catches up with its moves
+            if (replayed > 0) {
+                gameWrites.markDirty(gameId, new Game(game));
+            }
+        }
+
+        return game;
 
     }
 
     /**
-     * Gets all Games for the user with the given UUID
+     * Gets summaries of the Games in progress for the User with the given
+     * Username, as last written to the database
      * 
-     * @param userId the UUID of the user for which to get Games
-     * @return a list of the Users Games
+     * @param username the Username of the user for which to get Games
+     * @return the Users Games in progress, newest first
      */
-    public List<Game> findAllByUserId(UUID userId) {
+    public List<GameSummaryDTO> findActiveByUsername(String username) {
+
+        // Get the User with the given Username
+        User u = userService.findByUsername(username);
 
-        // Find and return all Games where one of the players UUIDs is the given UUID
-        return gameRepo.getAllByUserId(userId);
+        // Ensure the User was found
+        if (u == null) {
+            throw new NotFoundException("User", "username: " + username);
+        }
+
+        return gameRepo.getActiveByUserId(u.getId());
 
     }
 
     /**
-     * Gets all Games for the User with the given Username
+     * Gets a page of summaries of the Games for the User with the given Username,
+     * newest first. Only the columns shown in a list are read, not the position or
+     * moves of each Game
      * 
      * @param username the Username of the user for which to get Games
-     * @return a list of the Users Gaems
+     * @param cursor   the cursor returned with the page before, or empty for the
+     *                 first page
+     * @param limit    the most Games to get, at most {@value #GAME_PAGE_MAX_SIZE}
+     * @return the page of the Users Games, with the cursor of the next page
+     * @throws IllegalArgumentException if the cursor or limit is invalid
      */
-    public List<Game> findAllByUsername(String username) {
+    public GamePageDTO findPageByUsername(String username, Optional<String> cursor, int limit) {
+
+        if (limit < 1 || limit > GAME_PAGE_MAX_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + GAME_PAGE_MAX_SIZE);
+        }
 
         // Get the User with the given Username
         User u = userService.findByUsername(username);
@@ -86,8 +253,25 @@ public class GameService {
             throw new NotFoundException("User", "username: " + username);
         }
 
-        // Return find the Users Games by User UUID
-        return findAllByUserId(u.getId());
+        // Start after the last Game of the page before
+        Date beforeDate = null;
+        UUID beforeId = null;
+        if (cursor.isPresent()) {
+            String[] fields = decodeCursor(cursor.get());
+            beforeDate = new Date(Long.parseLong(fields[0]));
+            beforeId = UUID.fromString(fields[1]);
+        }
+
+        // Get one more Game than asked for, to know if there is a next page
+        List<GameSummaryDTO> games = gameRepo.getPageByUserId(u.getId(), beforeDate, beforeId, limit + 1);
+
+        String nextCursor = null;
+        if (games.size() > limit) {
+            games = new ArrayList<>(games.subList(0, limit));
+            nextCursor = encodeCursor(games.get(limit - 1));
+        }
+
+        return new GamePageDTO(games, nextCursor);
 
     }
 
@@ -128,12 +312,23 @@ public class GameService {
             throw new NotFoundException("User", "Username: " + blackPlayerUsername);
         }
 
-        // Set default values
+        // Set default values. The date is when the Game was created here, not
+        // whatever the client sent, so Games page in the order they were created
+        game.setDate(new Date());
         game.setBlackPlayerId(blackPlayer.getId());
         game.setWhitePlayerId(whitePlayer.getId());
+        Position position = toPosition(game);
+        game.setCastlingRights(position.getCastlingRights());
+        game.setEnPassantSquare(position.getEnPassantSquare());
+        game.setHalfmoveClock(position.getHalfmoveClock());
+        game.setPlyCount(getPlyCount(game));
+        game.setZobristKey(position.getHash());
 
         gameRepo.save(game);
 
+        // the first move won't need to read the new Game back
+        liveGames.register(UUID.fromString(game.getId()), game, position);
+
         return game.getId();
 
     }
@@ -164,8 +359,8 @@ public class GameService {
      */
     public void resign(String username, UUID gameId) {
 
-        // Get the Game with the given UUID
-        Game game = findById(gameId);
+        // Get the Game with the given UUID, using the live Game if there is one
+        Game game = findGameForUpdate(gameId);
 
         // Ensure the Game exists
         if (game == null) {
@@ -186,11 +381,20 @@ public class GameService {
             throw new UnauthorizedException();
         }
 
-        // Set the result of the game
-        game.setResult(playerColor.equals("w") ? "0-1" : "1-0");
+        // Set the result of the game, ensuring it didn't end while waiting
+        synchronized (game) {
+            if (!game.getResult().equals("*")) {
+                throw new RuntimeException("Cannot resign from a game that has already ended");
+            }
+            game.setResult(playerColor.equals("w") ? "0-1" : "1-0");
+            game.setFinishedAt(new Date());
+            gameWrites.markDirty(gameId, new Game(game));
+        }
 
-        // Update the game
-        gameRepo.update(game);
+        // Write the game straight away, since it is no longer live
+        liveGames.evict(gameId);
+        gameWrites.flush();
+        archiveMoves(gameId, game);
 
     }
 
@@ -203,7 +407,7 @@ public class GameService {
      */
     public void timeout(String username, UUID gameId) {
 
-        Game game = findById(gameId);
+        Game game = findGameForUpdate(gameId);
 
         if (game == null) {
             throw new NotFoundException("Game", "ID: " + gameId);
@@ -222,35 +426,44 @@ public class GameService {
             throw new UnauthorizedException();
         }
 
-        // Set the result of the game
-        game.setResult(playerColor.equals("w") ? "0-1" : "1-0");
+        // Set the result of the game, ensuring it didn't end while waiting
+        synchronized (game) {
+            if (!game.getResult().equals("*")) {
+                throw new RuntimeException("Timeout Error: Game has already ended");
+            }
+            game.setResult(playerColor.equals("w") ? "0-1" : "1-0");
+            game.setFinishedAt(new Date());
+            gameWrites.markDirty(gameId, new Game(game));
+        }
 
-        // Update the game
-        gameRepo.update(game);
+        // Write the game straight away, since it is no longer live
+        liveGames.evict(gameId);
+        gameWrites.flush();
+        archiveMoves(gameId, game);
 
     }
 
     /**
-     * performs a given move on a given Game
+     * performs a given move on a given Game. Games in progress are kept in
+     * memory, so only the first move of a Game on this node reads it from the
+     * database
      * 
      * @param username the Username of the User performing the move
      * @param gameId   the UUID of the Game on which to perform the move
      * @param move     the move to perform
+     * @return the Game after the move
      */
-    public void doMove(String username, String gameId, MoveDTO move) {
+    public Game doMove(String username, String gameId, MoveDTO move) {
 
         // Ensure the given gameId is a valid UUID
         if (!sessionService.isValidUUID(gameId)) {
             throw new NotFoundException("Game", "ID: " + gameId);
         }
 
-        // Get the Game with the given UUID
-        Game game = findById(UUID.fromString(gameId));
-
-        // Ensure the Game exists
-        if (game == null) {
-            throw new NotFoundException("Game", "ID: " + gameId);
-        }
+        // Get the live Game with the given UUID
+        UUID id = UUID.fromString(gameId);
+        LiveGame liveGame = findLiveGame(id);
+        Game game = liveGame.game();
 
         String playerColor = "";
         // Ensure the User doing the move is one of the players
@@ -262,67 +475,170 @@ public class GameService {
             throw new UnauthorizedException();
         }
 
-        // Get all possible moves
-        List<String> validMoves = getValidMoves(game, Optional.ofNullable(null), Optional.ofNullable(playerColor));
+        // Wait for room to write the move before taking the Game's lock, so a
+        // move never waits on the database while holding it
+        if (!gameWrites.reserve()) {
+            throw new RuntimeException("Too many moves are waiting to be saved, try again");
+        }
+
+        // Moves on the same Game are made one at a time, and the Game after the
+        // move is returned as a copy
+        Game result;
+        boolean appended = false;
+        try {
+            synchronized (game) {
+
+                // Ensure the Game didn't end while waiting
+                if (!game.getResult().equals("*")) {
+                    throw new RuntimeException("Cannot move in a game that has already ended");
+                }
+
+                // Ensure the attempted move is valid, checking only that move
+                Position position = liveGame.position();
+                if (!isValidMove(position, move, toColor(playerColor))) {
+                    throw new RuntimeException("Attempting to perform an Invalid Move");
+                }
+
+                int packedMove = doMoveOnGame(game, position, move);
+                if (!game.getResult().equals("*")) {
+                    game.setFinishedAt(new Date());
+                }
+
+                // Append the move into the room reserved for it, and mark the Game
+                // to be written from a copy, so later moves don't change it
+                // mid-write. Neither waits, and both are done under the lock so a
+                // Game's moves and states are queued in the order they were made
+                gameWrites.append(new GameMove(id, game.getPlyCount() - 1, packedMove, move.getMiliseconds()));
+                appended = true;
+                gameWrites.markDirty(id, new Game(game));
+                result = new Game(game);
 
-        // Ensure the attempted move is valid
-        if (!validMoves.contains(move.toString())) {
-            throw new RuntimeException("Attempting to perform an Invalid Move");
+            }
+        } finally {
+            if (!appended) {
+                gameWrites.release();
+            }
         }
 
-        doMoveOnGame(game, move);
+        // Games that have ended are no longer kept, and are written straight away
+        if (!result.getResult().equals("*")) {
+            liveGames.evict(id);
+            gameWrites.flush();
+            archiveMoves(id, game);
+        }
 
-        // Update the Game in the db
-        update(username, game);
+        return result;
 
     }
 
-    public void doMoveOnGame(Game game, MoveDTO move) {
+    /**
+     * Gets the Game with the given UUID to update it, which is the live Game itself
+     * if it is in progress on this node, so updates are made under its lock
+     * 
+     * @param gameId the UUID of the Game
+     * @return the Game to update, or null if there is no Game with the UUID
+     */
+    private Game findGameForUpdate(UUID gameId) {
 
-        String opponentColor = new String[] { "w", "b" }[game.getMoves().split(" ").length % 2];
+        LiveGame liveGame = liveGames.get(gameId);
+        if (liveGame != null) {
+            return liveGame.game();
+        }
 
-        // Get the grid to perform the move on
-        String[][] grid = FENToGrid(game.getFEN());
+        return findById(gameId);
 
-        int[] start = move.getStartSquare();
-        int[] end = move.getDestSquare();
+    }
 
-        // Perform the move on the Grid
-        // if the move is an en passant
-        if (move.getIsCapture() && move.toString().toLowerCase().contains("p") && grid[end[1]][end[0]].equals(" ")) {
-            grid[start[1]][end[0]] = " ";
-        }
-        // if the move is a castle
-        if (move.getPiece().toLowerCase().equals("k") && Math.abs(start[0] - end[0]) >= 2) {
-            int[] rook = new int[2];
-            rook[0] = end[0] < 4 ? 0 : 7;
-            rook[1] = end[1];
+    /**
+     * Gets the live Game with the given UUID, reading it from the database and
+     * making it live if it isn't yet
+     * 
+     * @param gameId the UUID of the Game
+     * @return the live Game
+     * @throws NotFoundException if there is no Game with the UUID
+     * @throws RuntimeException  if the Game has already ended
+     */
+    protected LiveGame findLiveGame(UUID gameId) {
 
-            grid[end[1]][end[0] + (end[0] < 4 ? 1 : -1)] = grid[rook[1]][rook[0]];
-            grid[rook[1]][rook[0]] = " ";
+        LiveGame liveGame = liveGames.get(gameId);
+        if (liveGame != null) {
+            return liveGame;
         }
 
-        grid[end[1]][end[0]] = grid[start[1]][start[0]];
-        grid[start[1]][start[0]] = " ";
+        Game game = findById(gameId);
+
+        // Ensure the Game exists
+        if (game == null) {
+            throw new NotFoundException("Game", "ID: " + gameId);
+        }
 
-        if (move.getPromotion() != null && move.getPiece().toLowerCase().equals("p") && end[1] % 7 == 0) {
-            grid[end[1]][end[0]] = move.getPromotion();
-            move.setIsCheck(isInCheck(grid, opponentColor));
-            boolean hasNoMoves = isInMate(grid, opponentColor);
-            move.setIsMate(move.getIsCheck() && hasNoMoves);
-            move.setIsStalemate(!move.getIsCheck() && hasNoMoves);
+        // Ensure the Game is still in progress
+        if (!game.getResult().equals("*")) {
+            throw new RuntimeException("Cannot move in a game that has already ended");
         }
 
+        return liveGames.register(gameId, game, toPosition(game));
+
+    }
+
+    /**
+     * Performs a move on the given Game, and annotates the move with whether it
+     * captures, checks, mates, or stalemates
+     * 
+     * @param game the Game to perform the move on
+     * @param move the move to perform
+     */
+    public void doMoveOnGame(Game game, MoveDTO move) {
+
+        doMoveOnGame(game, toPosition(game), move);
+
+    }
+
+    /**
+     * Performs a move on the given Game, starting from the Position it is already
+     * in, and annotates the move with whether it captures, checks, mates, or
+     * stalemates
+     * 
+     * @param game     the Game to perform the move on
+     * @param position the current Position of the Game
+     * @param move     the move to perform
+     * @return the packed, annotated move
+     */
+    protected int doMoveOnGame(Game game, Position position, MoveDTO move) {
+
+        int plyCount = getPlyCount(game);
+
+        int packedMove = toPackedMove(position, move);
+
+        position.setSideToMove(Position.colorOf(Move.piece(packedMove)));
+
+        // the hash is updated with the move, from the pieces it touches
+        position.makeMove(packedMove);
+
+        // Annotate only the move that was played
+        packedMove = annotateMove(packedMove, position);
+        move.setIsCapture(Move.isCapture(packedMove));
+        move.setIsCheck(Move.hasFlag(packedMove, Move.CHECK));
+        move.setIsMate(Move.hasFlag(packedMove, Move.MATE));
+        move.setIsStalemate(Move.hasFlag(packedMove, Move.STALEMATE));
+
         // Set the new game features
-        game.setFEN(gridToFEN(grid));
+        game.setFEN(position.toFEN());
+        game.setZobristKey(position.getHash());
+        game.setCastlingRights(position.getCastlingRights());
+        game.setEnPassantSquare(position.getEnPassantSquare());
+        game.setHalfmoveClock(position.getHalfmoveClock());
+        game.setPlyCount(plyCount + 1);
         game.setMoves((game.getMoves() + " " + move.toString()).trim());
         game.setMoveTimes((game.getMoveTimes() + " " + move.getMiliseconds()).trim());
         if (move.getIsMate()) {
-            game.setResult(game.getMoves().split(" ").length % 2 == 0 ? "1-0" : "0-1");
+            game.setResult(Position.colorOf(Move.piece(packedMove)) == Position.WHITE ? "1-0" : "0-1");
         } else if (move.getIsStalemate()) {
             game.setResult("1/2-1/2");
         }
 
+        return packedMove;
+
     }
 
     /**
@@ -338,6 +654,24 @@ public class GameService {
     public List<String> getValidMoves(String username, String gameId, Optional<int[]> startingSquare,
             Optional<String> playerColor) {
 
+        return getValidMoves(username, gameId, startingSquare, playerColor, false);
+
+    }
+
+    /**
+     * Gets all the valid moves for the curent position of the Game with the given
+     * UUID
+     * 
+     * @param gameId             the UUID of the Game to get valid moves for
+     * @param startingSquare     the optional (x, y) coordinates, with the origin at
+     *                           the top-left, of the square to find valid moves from
+     * @param playerColor        the optional player color to find valid moves for
+     * @param includeAnnotations if captures, checks, and mates are annotated
+     * @return a list of valid moves in modified SAN
+     */
+    public List<String> getValidMoves(String username, String gameId, Optional<int[]> startingSquare,
+            Optional<String> playerColor, boolean includeAnnotations) {
+
         // Get the UUID of the Game
         if (!sessionService.isValidUUID(gameId)) {
             throw new NotFoundException("Game", "ID: %s".formatted(gameId));
@@ -356,7 +690,16 @@ public class GameService {
             throw new UnauthorizedException();
         }
 
-        return getValidMoves(game, startingSquare, playerColor);
+        // Games in progress already have their Position in memory
+        LiveGame liveGame = liveGames.get(UUID.fromString(gameId));
+        if (liveGame != null) {
+            synchronized (liveGame.game()) {
+                return getValidMoves(liveGame.position(), Optional.ofNullable(null), startingSquare, playerColor,
+                        false, includeAnnotations);
+            }
+        }
+
+        return getValidMoves(game, startingSquare, playerColor, includeAnnotations);
 
     }
 
@@ -372,19 +715,36 @@ public class GameService {
     public List<String> getValidMoves(Game game, Optional<int[]> startingSquare,
             Optional<String> playerColor) {
 
-        // Get the board from the game
-        String FEN = game.getFEN();
+        return getValidMoves(game, startingSquare, playerColor, false);
+
+    }
+
+    /**
+     * Get all valid moves based on the given Game, and optional starting square and
+     * player color
+     * 
+     * @param game               the Game for which to get valid moves
+     * @param startingSquare     the optional starting square to consider
+     * @param playerColor        the optional player color to consider
+     * @param includeAnnotations if captures, checks, and mates are annotated
+     * @return
+     */
+    public List<String> getValidMoves(Game game, Optional<int[]> startingSquare,
+            Optional<String> playerColor, boolean includeAnnotations) {
 
-        String[] moves = game.getMoves().split(" ");
+        // Get the Position, with the castling rights and en passant square kept on
+        // the Game
+        Position position = toPosition(game);
 
-        return getValidMoves(FEN, Optional.ofNullable(moves), startingSquare, playerColor);
+        return getValidMoves(position, Optional.ofNullable(null), startingSquare, playerColor, false,
+                includeAnnotations);
 
     }
 
     /**
      * Get all valid moves based on the given FEN, and optional starting square and
-     * player color. Note that since FEN doesn't include previous moves, castling is
-     * left out of the result set.
+     * player color. Castling and en passant are read from the FEN's fields, or
+     * worked out from the previous moves if they are given.
      * 
      * @param fen            the FEN notation for the current game state
      * @param startingSquare the optional start square from which to get valid moves
@@ -394,9 +754,27 @@ public class GameService {
     public List<String> getValidMoves(String fen, Optional<String[]> moves, Optional<int[]> startingSquare,
             Optional<String> playerColor) {
 
-        String[][] grid = FENToGrid(fen);
+        return getValidMoves(fen, moves, startingSquare, playerColor, false);
+
+    }
+
+    /**
+     * Get all valid moves based on the given FEN, and optional starting square and
+     * player color. Castling and en passant are read from the FEN's fields, or
+     * worked out from the previous moves if they are given.
+     * 
+     * @param fen                the FEN notation for the current game state
+     * @param startingSquare     the optional start square from which to get valid
+     *                           moves
+     * @param playerColor        the optional player color for who to get valid
+     *                           moves
+     * @param includeAnnotations if captures, checks, and mates are annotated
+     * @return
+     */
+    public List<String> getValidMoves(String fen, Optional<String[]> moves, Optional<int[]> startingSquare,
+            Optional<String> playerColor, boolean includeAnnotations) {
 
-        return getValidMoves(grid, moves, startingSquare, playerColor, false, true);
+        return getValidMoves(FEN.parse(fen), moves, startingSquare, playerColor, false, includeAnnotations);
 
     }
 
@@ -414,615 +792,1108 @@ public class GameService {
     public List<String> getValidMoves(String[][] grid, Optional<String[]> previousMoves, Optional<int[]> startingSquare,
             Optional<String> playerColor, boolean ignoreCheck, boolean includeAnnotations) {
 
-        // Create a list of all possible starting squares
-        List<int[]> startingSquareList = new ArrayList<int[]>();
+        return getValidMoves(Position.fromGrid(grid), previousMoves, startingSquare, playerColor, ignoreCheck,
+                includeAnnotations);
 
-        // Add only the relevant starting squares
-        if (startingSquare.isPresent()) {
-            startingSquareList.add(startingSquare.get());
-        } else {
-            startingSquareList = getStartingSquaresFromGrid(grid, playerColor);
+    }
+
+    /**
+     * Get all valid moves based on the given Position, and optional starting
+     * square and player color
+     * 
+     * @param position       the bitboard Position to find valid moves on. It is
+     *                       modified while moves are simulated, but left as it was
+     *                       found
+     * @param startingSquare the starting square from which to find valid moves
+     * @param playerColor    the player color for whom to find valid moves
+     * @return a list of valid moves in modified SAN
+     */
+    public List<String> getValidMoves(Position position, Optional<String[]> previousMoves,
+            Optional<int[]> startingSquare, Optional<String> playerColor, boolean ignoreCheck,
+            boolean includeAnnotations) {
+
+        IntMoveList moves = new IntMoveList();
+
+        // Work out castling and en passant from the previous moves, if given
+        if (previousMoves.isPresent()) {
+            applyMoveHistory(position, previousMoves.get());
+        }
+
+        // Moves ignoring check are only used internally, so aren't worth caching
+        if (ignoreCheck) {
+            generateValidMoves(position, startingSquare, playerColor, ignoreCheck, includeAnnotations, moves);
+            return toMoveStrings(moves);
         }
 
-        // List of all possible moves
-        List<String> moves = new ArrayList<String>();
+        // Filter the cached moves of the piece's color by the given starting square
+        if (startingSquare.isPresent()) {
+            int[] start = startingSquare.get();
+            if (!Bitboards.isOnBoard(start[0], start[1])) {
+                throw new IllegalArgumentException("Starting square is not on the board");
+            }
+            int square = Bitboards.square(start[0], start[1]);
+            int piece = position.pieceAt(square);
+            if (piece == Position.NO_PIECE) {
+                return toMoveStrings(moves);
+            }
+            for (int move : getCachedValidMoves(position, Position.colorOf(piece), includeAnnotations)) {
+                if (Move.from(move) == square) {
+                    moves.add(move);
+                }
+            }
+            return toMoveStrings(moves);
+        }
 
-        // Add the moves from each starting position
-        for (int[] start : startingSquareList) {
-            List<String> pieceMoves = findValidPieceMoves(grid, previousMoves, start, ignoreCheck, includeAnnotations);
-            moves.addAll(pieceMoves);
+        // Add the cached moves of each color, white first
+        for (int color : getPlayerColors(playerColor)) {
+            for (int move : getCachedValidMoves(position, color, includeAnnotations)) {
+                moves.add(move);
+            }
         }
 
-        return moves;
+        return toMoveStrings(moves);
 
     }
 
-    public List<Game> getGameStates(String gameId) {
+    /**
+     * @return the hit, miss, and eviction counts of the valid moves cache
+     */
+    public CacheStats getValidMovesCacheStats() {
+        return validMovesCache.getStats();
+    }
 
-        Game game = findById(UUID.fromString(gameId));
+    /**
+     * @return the number of games in progress kept in memory
+     */
+    public long getLiveGameCount() {
+        return liveGames.size();
+    }
 
-        if (game == null) {
-            throw new NotFoundException("Game", "gameId: " + gameId);
-        }
+    /**
+     * Publishes the metrics of the valid moves cache and the games in progress,
+     * which are scraped from the actuator's prometheus endpoint
+     * 
+     * @param registry the registry to publish the metrics to
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        validMovesCache.bindTo(registry, "validMoves");
+        Gauge.builder("games.live", this, GameService::getLiveGameCount)
+                .description("The number of games in progress kept in memory")
+                .register(registry);
+    }
 
-        List<Game> gameStates = new ArrayList<>();
+    /**
+     * Writes every Game update still waiting to be written
+     */
+    public void flushGameUpdates() {
+        gameWrites.flush();
+    }
 
-        Game newGame = new Game();
-        Game currentState = new Game();
+    /**
+     * Starts moving finished Games to the archive in the background
+     */
+    @PostConstruct
+    public void startArchiving() {
+        gameArchiver.start();
+    }
 
-        gameStates.add(currentState);
+    /**
+     * Moves every Game that ended long enough ago to the archive
+     * 
+     * @return the number of Games moved
+     */
+    public int archiveFinishedGames() {
+        return gameArchiver.archive();
+    }
 
-        for (String move : game.getMoves().split(" ")) {
+    /**
+     * Writes the waiting Game updates before the application stops, so none are
+     * lost
+     */
+    @PreDestroy
+    public void shutdown() {
+        gameArchiver.shutdown();
+        gameWrites.shutdown();
+    }
+
+    /**
+     * Gets all valid moves of one color from the cache, generating them on a miss.
+     * The Position's hash covers its castling rights and en passant square, so
+     * it is the whole key
+     * 
+     * @param position           the Position to find valid moves on
+     * @param playerColor        the color to find valid moves for
+     * @param includeAnnotations if captures, checks, and mates are annotated
+     * @return the packed valid moves, which must not be modified
+     */
+    protected int[] getCachedValidMoves(Position position, int playerColor, boolean includeAnnotations) {
 
-            doMoveOnGame(newGame, MoveDTO.fromString(move));
+        return validMovesCache.get(position.getHash(), playerColor, includeAnnotations, () -> {
+            IntMoveList moves = new IntMoveList();
+            generateValidMoves(position, Optional.ofNullable(null),
+                    Optional.ofNullable(playerColor == Position.WHITE ? "w" : "b"), false, includeAnnotations, moves);
+            return moves.toArray();
+        });
 
-            currentState = new Game();
+    }
 
-            currentState.setFEN(newGame.getFEN());
-            currentState.setMoves(newGame.getMoves());
+    /**
+     * Adds all valid moves based on the given Position, and optional starting
+     * square and player color, to the given list as packed {@link Move}s
+     * 
+     * @param position       the bitboard Position to find valid moves on. It is
+     *                       modified while moves are simulated, but left as it was
+     *                       found
+     * @param startingSquare the starting square from which to find valid moves
+     * @param playerColor    the player color for whom to find valid moves
+     * @param moves          the list to add the valid moves to
+     */
+    public void generateValidMoves(Position position, Optional<int[]> startingSquare, Optional<String> playerColor,
+            boolean ignoreCheck, boolean includeAnnotations, IntMoveList moves) {
 
-            gameStates.add(currentState);
+        // Add only the moves from the given starting square
+        if (startingSquare.isPresent()) {
+            int[] start = startingSquare.get();
+            if (!Bitboards.isOnBoard(start[0], start[1])) {
+                throw new IllegalArgumentException("Starting square is not on the board");
+            }
+            int square = Bitboards.square(start[0], start[1]);
+            int piece = position.pieceAt(square);
+            if (piece == Position.NO_PIECE) {
+                return;
+            }
+            LegalMoveMasks masks = ignoreCheck ? LegalMoveMasks.IGNORE_CHECK
+                    : LegalMoveMasks.of(position, Position.colorOf(piece));
+            findValidPieceMoves(position, square, masks, includeAnnotations, moves);
+            return;
+        }
 
+        // Add the moves from each starting position, white pieces first
+        for (int color : getPlayerColors(playerColor)) {
+            LegalMoveMasks masks = ignoreCheck ? LegalMoveMasks.IGNORE_CHECK : LegalMoveMasks.of(position, color);
+            long pieces = position.getColorOccupancy(color);
+            while (pieces != 0) {
+                int start = Long.numberOfTrailingZeros(pieces);
+                pieces &= pieces - 1;
+                findValidPieceMoves(position, start, masks, includeAnnotations, moves);
+            }
         }
 
-        return gameStates;
     }
 
-    // #endregion
+    public List<Game> getGameStates(String gameId) {
 
-    // #region private helper
+        Game game = findById(UUID.fromString(gameId));
 
-    // #region findValidMoves
+        if (game == null) {
+            throw new NotFoundException("Game", "gameId: " + gameId);
+        }
 
-    protected List<String> findValidPieceMoves(String[][] grid, Optional<String[]> previousMoves, int[] start,
-            boolean ignoreCheck, boolean includeAnnotations) {
-        int x = start[0], y = start[1];
+        List<Game> gameStates = new ArrayList<>();
 
-        List<String> validMoves = new ArrayList<String>();
+        Game currentState = new Game();
+
+        gameStates.add(currentState);
+
+        // Replay the moves on a single Position, from the starting position
+        Position position = FEN.parse(currentState.getFEN());
+        StringBuilder moves = new StringBuilder();
+
+        // Finished Games are decoded straight onto the Position
+        if (game.getMoveData() != null) {
+            MoveListCodec.decode(game.getMoveData(), position, (move, clockMillis) -> {
+                if (moves.length() > 0) {
+                    moves.append(' ');
+                }
+                moves.append(MoveDTO.fromMove(move).toString());
+
+                Game state = new Game();
+                state.setFEN(position.toFEN());
+                state.setMoves(moves.toString());
+                gameStates.add(state);
+            });
+            return gameStates;
+        }
+
+        for (String move : game.getMoves().split(" ")) {
+
+            if (move.isEmpty()) {
+                continue;
+            }
+
+            position.makeMove(toPackedMove(position, MoveDTO.fromString(move)));
+
+            if (moves.length() > 0) {
+                moves.append(' ');
+            }
+            moves.append(move);
+
+            currentState = new Game();
+
+            currentState.setFEN(position.toFEN());
+            currentState.setMoves(moves.toString());
+
+            gameStates.add(currentState);
 
-        switch (grid[y][x]) {
-            case "R", "r":
-                validMoves = findValidRookMoves(grid, start, ignoreCheck, includeAnnotations);
-                break;
-            case "N", "n":
-                validMoves = findValidKnightMoves(grid, start, ignoreCheck, includeAnnotations);
-                break;
-            case "B", "b":
-                validMoves = findValidBishopMoves(grid, start, ignoreCheck, includeAnnotations);
-                break;
-            case "K", "k":
-                validMoves = findValidKingMoves(grid, previousMoves, start, ignoreCheck, includeAnnotations);
-                break;
-            case "Q", "q":
-                validMoves = findValidQueenMoves(grid, start, ignoreCheck, includeAnnotations);
-                break;
-            case "P", "p":
-                validMoves = findValidPawnMoves(grid, previousMoves, start, ignoreCheck, includeAnnotations);
-                break;
         }
 
-        return validMoves;
+        return gameStates;
     }
 
-    protected List<String> findValidRookMoves(String[][] grid, int[] start, boolean ignoreCheck,
-            boolean includeAnnotations) {
+    // #endregion
+
+    // #region perft
+
+    /**
+     * Counts the leaf nodes of the move tree of a position, using the same move
+     * generation as getValidMoves. The counts can be checked against known
+     * counts to catch move generation bugs, and timed to measure its speed
+     * 
+     * @param fen   the FEN of the position
+     * @param depth the number of plies to search
+     * @return the number of leaf nodes, and how long they took to count
+     */
+    public PerftDTO perft(String fen, int depth) {
+        return perft(fen, depth, false);
+    }
 
-        int x = start[0], y = start[1];
+    /**
+     * Counts the leaf nodes of the move tree of a position, optionally divided
+     * by the first move, to narrow down which move is counted wrong
+     * 
+     * @param fen    the FEN of the position
+     * @param depth  the number of plies to search
+     * @param divide if the nodes below each valid move are counted separately
+     * @return the number of leaf nodes, and how long they took to count
+     */
+    public PerftDTO perft(String fen, int depth, boolean divide) {
 
-        List<String> movesList = new ArrayList<String>();
+        if (depth < 0) {
+            throw new IllegalArgumentException("Depth must not be negative");
+        }
 
-        for (int[] dir : new int[][] {
-                new int[] { 0, 1 }, // horizontal, vertical increment
-                new int[] { 0, -1 },
-                new int[] { 1, 0 },
-                new int[] { -1, 0 } }) {
+        Position position = FEN.parse(fen);
 
-            int x2 = x + dir[0], y2 = y + dir[1];
-            String[][] gridAfterMove = Arrays.stream(grid).map(row -> row.clone()).toArray(String[][]::new);
-            String playerColor = grid[y][x].equals(grid[y][x].toLowerCase()) ? "b" : "w";
-            String opponentColor = grid[y][x].equals(grid[y][x].toLowerCase()) ? "w" : "b";
+        // one list per ply, reused by every node at that ply
+        IntMoveList[] moveLists = new IntMoveList[depth + 1];
+        for (int ply = 0; ply <= depth; ply++) {
+            moveLists[ply] = new IntMoveList();
+        }
 
-            while (0 <= x2 && x2 < grid[0].length && 0 <= y2 && y2 < grid.length) {
-                // if this square is the same color as the rook, break while
-                if (isSameColorPiece(grid, x, y, x2, y2)) {
-                    break;
-                }
+        PerftDTO result = new PerftDTO();
+        result.setFen(fen);
+        result.setDepth(depth);
 
-                // update the pieces to resemble the attempted move
-                gridAfterMove[y2][x2] = grid[y][x];
-                gridAfterMove[y2 - dir[1]][x2 - dir[0]] = " ";
-
-                // if moving to this square leaves the king checked, skip while iteration
-                if (!ignoreCheck && isInCheck(gridAfterMove, playerColor)) {
-                    if (!grid[y2][x2].equals(" ")) {
-                        break;
-                    } else {
-                        x2 += dir[0];
-                        y2 += dir[1];
-                        continue;
-                    }
-                }
+        long start = System.nanoTime();
 
-                MoveDTO move = new MoveDTO();
-
-                move.setPiece(grid[y][x]);
-                move.setStartSquare(new int[] { x, y });
-                move.setDestSquare(new int[] { x2, y2 });
-                if (includeAnnotations) {
-                    move.setIsCapture(!grid[y2][x2].equals(" "));
-                    move.setIsCheck(isInCheck(gridAfterMove, opponentColor));
-                    boolean hasNoMoves = isInMate(gridAfterMove, opponentColor);
-                    move.setIsMate(move.getIsCheck() && hasNoMoves);
-                    move.setIsStalemate(!move.getIsCheck() && hasNoMoves);
-                }
+        if (divide && depth > 0) {
 
-                movesList.add(move.toString());
+            Map<String, Long> counts = new LinkedHashMap<>();
+            IntMoveList moves = moveLists[depth];
+            generatePerftMoves(position, moves);
 
-                // if this square is not empty, it must be an opposing piece that we capture
-                if (!grid[y2][x2].equals(" ")) {
-                    break;
+            for (int i = 0; i < moves.size(); i++) {
+                int move = moves.get(i);
+                String moveString = MoveDTO.fromMove(move).toString();
+                if (Move.promotion(move) != Position.NO_PIECE) {
+                    moveString += Position.charOf(Move.promotion(move));
                 }
 
-                x2 += dir[0];
-                y2 += dir[1];
+                position.makeMove(move);
+                counts.merge(moveString, perft(position, depth - 1, moveLists), Long::sum);
+                position.unmakeMove();
             }
+
+            result.setDivide(counts);
+            result.setNodes(counts.values().stream().mapToLong(Long::longValue).sum());
+
+        } else {
+            result.setNodes(perft(position, depth, moveLists));
         }
 
-        return movesList;
+        result.setNanoseconds(System.nanoTime() - start);
+
+        return result;
 
     }
 
-    protected List<String> findValidKnightMoves(String[][] grid, int[] start, boolean ignoreCheck,
-            boolean includeAnnotations) {
+    /**
+     * Counts the leaf nodes below the given position
+     * 
+     * @param position  the Position to count from, which is left unchanged
+     * @param depth     the number of plies left to search
+     * @param moveLists a move list for each ply
+     * @return the number of leaf nodes
+     */
+    protected long perft(Position position, int depth, IntMoveList[] moveLists) {
 
-        int x = start[0], y = start[1];
+        if (depth == 0) {
+            return 1;
+        }
 
-        List<String> movesList = new ArrayList<String>();
+        IntMoveList moves = moveLists[depth];
+        generatePerftMoves(position, moves);
 
-        String[][] gridAfterMove = Arrays.stream(grid).map(row -> row.clone()).toArray(String[][]::new);
+        // the moves of the last ply only need counting, not playing
+        if (depth == 1) {
+            return moves.size();
+        }
 
-        String playerColor = grid[y][x].equals(grid[y][x].toLowerCase()) ? "b" : "w";
-        String opponentColor = grid[y][x].equals(grid[y][x].toLowerCase()) ? "w" : "b";
+        long nodes = 0;
 
-        for (int[] dir : new int[][] {
-                new int[] { -1, 2 },
-                new int[] { -1, -2 },
-                new int[] { -2, 1 },
-                new int[] { -2, -1 },
-                new int[] { 1, 2 },
-                new int[] { 1, -2 },
-                new int[] { 2, 1 },
-                new int[] { 2, -1 } }) {
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
 
-            int x2 = x + dir[0], y2 = y + dir[1];
+            position.makeMove(move);
+            nodes += perft(position, depth - 1, moveLists);
+            position.unmakeMove();
+        }
 
-            if (0 > x2 || x2 >= grid[0].length || 0 > y2 || y2 >= grid.length) {
-                continue;
-            }
+        return nodes;
 
-            if (isSameColorPiece(grid, x, y, x2, y2)) {
-                continue;
-            }
+    }
 
-            // simulate move
-            gridAfterMove[y][x] = " ";
-            gridAfterMove[y2][x2] = grid[y][x];
+    /**
+     * Fills the list with the valid moves of the side to move
+     * 
+     * @param position the Position to find valid moves on
+     * @param moves    the list to fill, which is cleared first
+     */
+    protected void generatePerftMoves(Position position, IntMoveList moves) {
 
-            // if moving to this square leaves the king checked, skip while iteration
-            if (!ignoreCheck && isInCheck(gridAfterMove, playerColor)) {
-                gridAfterMove[y][x] = grid[y][x];
-                gridAfterMove[y2][x2] = grid[y2][x2];
+        moves.clear();
+
+        generateValidMoves(position, Optional.ofNullable(null),
+                Optional.of(position.getSideToMove() == Position.WHITE ? "w" : "b"), false, false, moves);
+
+        // valid moves leave the promotion to the player, so each piece a pawn can
+        // be promoted to is counted as its own move
+        int size = moves.size();
+        for (int i = 0; i < size; i++) {
+            int move = moves.get(i);
+            int piece = Move.piece(move);
+            int y = Bitboards.y(Move.to(move));
+            if (Position.typeOf(piece) != Position.PAWN || (y != 0 && y != 7)) {
                 continue;
             }
+            int color = Position.colorOf(piece);
+            moves.set(i, withPromotion(move, Position.piece(color, Position.QUEEN)));
+            moves.add(withPromotion(move, Position.piece(color, Position.ROOK)));
+            moves.add(withPromotion(move, Position.piece(color, Position.BISHOP)));
+            moves.add(withPromotion(move, Position.piece(color, Position.KNIGHT)));
+        }
 
-            MoveDTO move = new MoveDTO();
+    }
 
-            move.setPiece(grid[y][x]);
-            move.setStartSquare(new int[] { x, y });
-            move.setDestSquare(new int[] { x2, y2 });
-            if (includeAnnotations) {
-                move.setIsCapture(!grid[y2][x2].equals(" "));
-                move.setIsCheck(isInCheck(gridAfterMove, opponentColor));
-                boolean hasNoMoves = isInMate(gridAfterMove, opponentColor);
-                move.setIsMate(move.getIsCheck() && hasNoMoves);
-                move.setIsStalemate(!move.getIsCheck() && hasNoMoves);
-            }
+    /**
+     * @param move      the packed pawn move
+     * @param promotion the piece the pawn is promoted to
+     * @return the move, promoting to the given piece
+     */
+    private int withPromotion(int move, int promotion) {
+        return Move.of(Move.from(move), Move.to(move), Move.piece(move), Move.captured(move), promotion, 0);
+    }
 
-            movesList.add(move.toString());
+    // #endregion
 
-            // return grid to regular state, ready for next move
-            gridAfterMove[y][x] = grid[y][x];
-            gridAfterMove[y2][x2] = grid[y2][x2];
+    // #region private helper
 
-        }
+    // #region findValidMoves
 
-        return movesList;
+    protected void findValidPieceMoves(Position position, int start, LegalMoveMasks masks,
+            boolean includeAnnotations, IntMoveList moves) {
 
-    }
+        int piece = position.pieceAt(start);
+        if (piece == Position.NO_PIECE) {
+            return;
+        }
 
-    protected List<String> findValidBishopMoves(String[][] grid, int[] start, boolean ignoreCheck,
-            boolean includeAnnotations) {
+        findValidTargetMoves(position, start, findPieceTargets(position, start), masks, includeAnnotations, moves);
 
-        int x = start[0], y = start[1];
+        switch (Position.typeOf(piece)) {
+            case Position.KING:
+                findValidCastlingMoves(position, start, masks, includeAnnotations, moves);
+                break;
+            case Position.PAWN:
+                findValidEnPassantMoves(position, start, masks, includeAnnotations, moves);
+                break;
+        }
 
-        List<String> movesList = new ArrayList<String>();
+    }
 
-        String playerColor = grid[y][x].equals(grid[y][x].toLowerCase()) ? "b" : "w";
-        String opponentColor = grid[y][x].equals(grid[y][x].toLowerCase()) ? "w" : "b";
+    /**
+     * Gets the squares the piece on the start square can move to, ignoring check,
+     * castling and en passant
+     * 
+     * @param position the Position to look at
+     * @param start    the square of the piece that is moving
+     * @return the mask of squares the piece can move to
+     */
+    protected long findPieceTargets(Position position, int start) {
+
+        int piece = position.pieceAt(start);
+        int playerColor = Position.colorOf(piece);
+        long occupied = position.getOccupied();
+        long notOwn = ~position.getColorOccupancy(playerColor);
+
+        switch (Position.typeOf(piece)) {
+            case Position.ROOK:
+                return Bitboards.rookAttacks(start, occupied) & notOwn;
+            case Position.KNIGHT:
+                return Bitboards.KNIGHT_ATTACKS[start] & notOwn;
+            case Position.BISHOP:
+                return Bitboards.bishopAttacks(start, occupied) & notOwn;
+            case Position.KING:
+                return Bitboards.KING_ATTACKS[start] & notOwn;
+            case Position.QUEEN:
+                return Bitboards.queenAttacks(start, occupied) & notOwn;
+            default:
+                return findPawnTargets(position, start);
+        }
 
-        for (int[] dir : new int[][] {
-                new int[] { 1, 1 },
-                new int[] { -1, -1 },
-                new int[] { 1, -1 },
-                new int[] { -1, 1 } }) {
+    }
 
-            String[][] gridAfterMove = Arrays.stream(grid).map(row -> row.clone()).toArray(String[][]::new);
-            int x2 = x + dir[0], y2 = y + dir[1];
+    protected long findPawnTargets(Position position, int start) {
 
-            while (0 <= x2 && x2 < grid[0].length && 0 <= y2 && y2 < grid.length) {
-                // if this square is the same color as the rook, break while
-                if (isSameColorPiece(grid, x, y, x2, y2)) {
-                    break;
-                }
+        int x = Bitboards.x(start), y = Bitboards.y(start);
 
-                // update the pieces to resemble the attempted move
-                gridAfterMove[y2][x2] = grid[y][x];
-                gridAfterMove[y2 - dir[1]][x2 - dir[0]] = " ";
-
-                // if moving to this square leaves the king checked, skip while iteration
-                if (!ignoreCheck && isInCheck(gridAfterMove, playerColor)) {
-                    if (!grid[y2][x2].equals(" ")) {
-                        break;
-                    } else {
-                        x2 += dir[0];
-                        y2 += dir[1];
-                        continue;
-                    }
-                }
+        int playerColor = Position.colorOf(position.pieceAt(start));
+        int opponentColor = 1 - playerColor;
 
-                MoveDTO move = new MoveDTO();
-
-                move.setPiece(grid[y][x]);
-                move.setStartSquare(new int[] { x, y });
-                move.setDestSquare(new int[] { x2, y2 });
-                if (includeAnnotations) {
-                    move.setIsCapture(!grid[y2][x2].equals(" "));
-                    move.setIsCheck(isInCheck(gridAfterMove, opponentColor));
-                    boolean hasNoMoves = isInMate(gridAfterMove, opponentColor);
-                    move.setIsMate(move.getIsCheck() && hasNoMoves);
-                    move.setIsStalemate(!move.getIsCheck() && hasNoMoves);
-                }
+        int increment = playerColor == Position.WHITE ? -1 : 1;
 
-                movesList.add(move.toString());
+        // Diagonal moves must capture an opposing piece
+        long targets = Bitboards.PAWN_ATTACKS[playerColor][start] & position.getColorOccupancy(opponentColor);
 
-                // if this square is not empty, it must be an opposing piece that we capture
-                if (!grid[y2][x2].equals(" ")) {
-                    break;
-                }
+        // Forward moves must land on empty squares, and may only move 2 from the
+        // pawns starting rank
+        if (Bitboards.isOnBoard(x, y + increment)
+                && position.pieceAt(Bitboards.square(x, y + increment)) == Position.NO_PIECE) {
 
-                x2 += dir[0];
-                y2 += dir[1];
+            targets |= 1L << Bitboards.square(x, y + increment);
+
+            boolean onStartingRank = playerColor == Position.WHITE ? y >= 6 : y <= 1;
+            if (onStartingRank && position.pieceAt(Bitboards.square(x, y + 2 * increment)) == Position.NO_PIECE) {
+                targets |= 1L << Bitboards.square(x, y + 2 * increment);
             }
 
         }
 
-        return movesList;
+        return targets;
 
     }
 
-    protected List<String> findValidKingMoves(String[][] grid, Optional<String[]> previousMoves, int[] start,
-            boolean ignoreCheck, boolean includeAnnotations) {
-
-        int x = start[0], y = start[1];
-
-        List<String> movesList = new ArrayList<String>();
+    /**
+     * Adds the castles the king on the start square can make. The king and rook
+     * must still have the castling right, the squares between them must be empty,
+     * and the king can't castle out of, through, or into check
+     * 
+     * @param position           the Position to find the moves on
+     * @param start              the square of the king
+     * @param masks              the check and pin masks of the moving player
+     * @param includeAnnotations if checks and mates are annotated
+     * @param moves              the list to add the valid moves to
+     */
+    protected void findValidCastlingMoves(Position position, int start, LegalMoveMasks masks,
+            boolean includeAnnotations, IntMoveList moves) {
 
-        String[][] gridAfterMove = Arrays.stream(grid).map(row -> row.clone()).toArray(String[][]::new);
+        int king = position.pieceAt(start);
+        int playerColor = Position.colorOf(king);
+        int opponentColor = 1 - playerColor;
 
-        String playerColor = grid[y][x].equals(grid[y][x].toLowerCase()) ? "b" : "w";
-        String opponentColor = grid[y][x].equals(grid[y][x].toLowerCase()) ? "w" : "b";
+        int y = playerColor == Position.WHITE ? 7 : 0;
+        int rights = position.getCastlingRights() & (playerColor == Position.WHITE
+                ? Position.WHITE_KINGSIDE | Position.WHITE_QUEENSIDE
+                : Position.BLACK_KINGSIDE | Position.BLACK_QUEENSIDE);
 
-        for (int[] dir : new int[][] {
-                new int[] { 1, 1 },
-                new int[] { -1, -1 },
-                new int[] { 1, -1 },
-                new int[] { -1, 1 },
-                new int[] { -1, 0 },
-                new int[] { 0, -1 },
-                new int[] { 1, 0 },
-                new int[] { 0, 1 } }) {
+        if (start != Bitboards.square(4, y) || rights == 0) {
+            return;
+        }
+        if (!masks.isCheckIgnored() && position.isSquareAttacked(start, opponentColor)) {
+            return;
+        }
 
-            int x2 = x + dir[0], y2 = y + dir[1];
+        // kingside the rook is on the h file and the king passes f to g, queenside
+        // the rook is on the a file and the king passes d to c
+        for (int rookX : new int[] { 7, 0 }) {
 
-            if (0 > x2 || x2 >= grid[0].length || 0 > y2 || y2 >= grid.length) {
+            int right = rookX == 7
+                    ? rights & (Position.WHITE_KINGSIDE | Position.BLACK_KINGSIDE)
+                    : rights & (Position.WHITE_QUEENSIDE | Position.BLACK_QUEENSIDE);
+            int rookSquare = Bitboards.square(rookX, y);
+            if (right == 0 || position.pieceAt(rookSquare) != Position.piece(playerColor, Position.ROOK)
+                    || (position.getOccupied() & Bitboards.BETWEEN[start][rookSquare]) != 0) {
                 continue;
             }
 
-            if (isSameColorPiece(grid, x, y, x2, y2)) {
+            int step = rookX == 7 ? 1 : -1;
+            int passed = Bitboards.square(4 + step, y), dest = Bitboards.square(4 + 2 * step, y);
+            if (!masks.isCheckIgnored() && (position.isSquareAttacked(passed, opponentColor)
+                    || position.isSquareAttacked(dest, opponentColor))) {
                 continue;
             }
 
-            // simulate move
-            gridAfterMove[y][x] = " ";
-            gridAfterMove[y2][x2] = grid[y][x];
+            int move = Move.of(start, dest, king, Position.NO_PIECE, Position.NO_PIECE, Move.CASTLE);
 
-            // if moving to this square leaves the king checked, skip while iteration
-            if (!ignoreCheck && isInCheck(gridAfterMove, playerColor)) {
-                gridAfterMove[y][x] = grid[y][x];
-                gridAfterMove[y2][x2] = grid[y2][x2];
-                continue;
+            if (includeAnnotations) {
+                position.makeMove(move);
+                move = annotateMove(move, position);
+                position.unmakeMove();
             }
 
-            MoveDTO move = new MoveDTO();
+            moves.add(move);
 
-            move.setPiece(grid[y][x]);
-            move.setStartSquare(new int[] { x, y });
-            move.setDestSquare(new int[] { x2, y2 });
-            if (includeAnnotations) {
-                move.setIsCapture(!grid[y2][x2].equals(" "));
-                move.setIsCheck(isInCheck(gridAfterMove, opponentColor));
-                boolean hasNoMoves = isInMate(gridAfterMove, opponentColor);
-                move.setIsMate(move.getIsCheck() && hasNoMoves);
-                move.setIsStalemate(!move.getIsCheck() && hasNoMoves);
-            }
+        }
 
-            movesList.add(move.toString());
+    }
 
-            // return grid to regular state, ready for next move
-            gridAfterMove[y][x] = grid[y][x];
-            gridAfterMove[y2][x2] = grid[y2][x2];
+    /**
+     * Adds the en passant the pawn on the start square can make, if the last move
+     * was a pawn skipping the square it attacks
+     * 
+     * @param position           the Position to find the moves on
+     * @param start              the square of the pawn
+     * @param masks              the check and pin masks of the moving player
+     * @param includeAnnotations if captures, checks, and mates are annotated
+     * @param moves              the list to add the valid moves to
+     */
+    protected void findValidEnPassantMoves(Position position, int start, LegalMoveMasks masks,
+            boolean includeAnnotations, IntMoveList moves) {
 
+        int enPassantSquare = position.getEnPassantSquare();
+        if (enPassantSquare == Position.NO_SQUARE) {
+            return;
         }
 
-        if (previousMoves.isPresent() && x == 4) {
+        int pawn = position.pieceAt(start);
+        int playerColor = Position.colorOf(pawn);
 
-            boolean leftPossible = true, rightPossible = true;
-            String leftRook, rightRook;
-            int xl, xr, y2, increment;
+        // the pawn must be beside the skipping pawn, on its fifth rank
+        int y = Bitboards.y(start);
+        if ((playerColor == Position.WHITE ? y != 3 : y != 4)
+                || (Bitboards.PAWN_ATTACKS[playerColor][start] & (1L << enPassantSquare)) == 0) {
+            return;
+        }
 
-            // Get the rooks names and coordinates based on playerColor
-            if (playerColor.equals("w")) {
-                leftRook = "Ra1";
-                rightRook = "Ra8";
-                xl = 0;
-                xr = 7;
-                y2 = 7;
-                increment = 1;
-            } else {
-                leftRook = "rh8";
-                rightRook = "rh1";
-                xl = 7;
-                xr = 0;
-                y2 = 0;
-                increment = -1;
-            }
+        int capturedSquare = Bitboards.square(Bitboards.x(enPassantSquare), y);
+        int captured = position.pieceAt(capturedSquare);
+        if (captured != Position.piece(1 - playerColor, Position.PAWN)
+                || position.pieceAt(enPassantSquare) != Position.NO_PIECE) {
+            return;
+        }
 
-            // Check if the king, or either rook has been used in a previous move
-            for (String move : previousMoves.get()) {
-                if (move.contains(grid[y][x])) {
-                    leftPossible = false;
-                    rightPossible = false;
-                    break;
-                }
-                if (move.contains(leftRook)) {
-                    leftPossible = false;
-                }
-                if (move.contains(rightRook)) {
-                    rightPossible = false;
-                }
-            }
+        int move = Move.of(start, enPassantSquare, pawn, captured, Position.NO_PIECE, Move.EN_PASSANT);
 
-            // check that all the spaces between the king and left rook are empty,
-            // and that no square in the kings path would be check
-            for (int x2 = x - increment; x2 != xl; x2 -= increment) {
-                if (!grid[y2][x2].equals(" ")) {
-                    leftPossible = false;
-                    break;
-                }
-                if (Math.abs(x2 - x) <= 2) {
-                    gridAfterMove[y2][x2] = grid[y][x];
-                    gridAfterMove[y][x] = " ";
-                    if (!ignoreCheck && isInCheck(gridAfterMove, playerColor)) {
-                        leftPossible = false;
-                    }
-                    gridAfterMove[y2][x2] = grid[y2][x2];
-                    gridAfterMove[y][x] = grid[y][x];
-                }
-            }
+        position.makeMove(move);
 
-            if (leftPossible) {
-                movesList.add(playerColor.equals("w") ? "Ke1c1" : "ke8g8");
-            }
+        // the captured pawn leaves the board too, which the masks can't account
+        // for, so the en passant is always checked on the simulated position
+        if (masks.isCheckIgnored() || !isInCheck(position, playerColor)) {
+            moves.add(includeAnnotations ? annotateMove(move, position) : move);
+        }
 
-            // check that all the spaces between the king and right rook are empty
-            for (int x2 = x + increment; x2 != xr; x2 += increment) {
-                if (!grid[y2][x2].equals(" ")) {
-                    rightPossible = false;
-                    break;
-                }
+        position.unmakeMove();
+
+    }
+
+    /**
+     * Adds the target moves which don't leave the player in check. Moves are only
+     * simulated when they need annotating, or when the masks can't tell if they
+     * are legal
+     * 
+     * @param position           the Position to find the moves on
+     * @param start              the square of the piece that is moving
+     * @param targets            the mask of squares the piece can move to
+     * @param masks              the check and pin masks of the moving player
+     * @param includeAnnotations if captures, checks, and mates are annotated
+     * @param moves              the list to add the valid moves to
+     */
+    protected void findValidTargetMoves(Position position, int start, long targets, LegalMoveMasks masks,
+            boolean includeAnnotations, IntMoveList moves) {
+
+        int piece = position.pieceAt(start);
+        int playerColor = Position.colorOf(piece);
+
+        targets = masks.legalTargets(start, targets);
+
+        while (targets != 0) {
+            int dest = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+
+            int move = Move.of(start, dest, piece, position.pieceAt(dest));
+
+            if (!includeAnnotations && !masks.requiresSimulation()) {
+                moves.add(move);
+                continue;
             }
 
-            if (rightPossible) {
-                movesList.add(playerColor.equals("w") ? "Ke1g1" : "ke8c8");
+            position.makeMove(move);
+
+            // if moving to this square leaves the king checked, the move is not valid
+            if (!masks.requiresSimulation() || !isInCheck(position, playerColor)) {
+                moves.add(includeAnnotations ? annotateMove(move, position) : move);
             }
 
+            position.unmakeMove();
         }
 
-        return movesList;
+    }
+
+    /**
+     * Works out whether a move that has already been simulated on the given
+     * Position checks, mates, or stalemates the opponent
+     * 
+     * @param move              the packed move
+     * @param positionAfterMove the Position after the move
+     * @return the annotated move
+     */
+    protected int annotateMove(int move, Position positionAfterMove) {
+
+        int opponentColor = 1 - Position.colorOf(Move.piece(move));
+        boolean isCheck = isInCheck(positionAfterMove, opponentColor);
+
+        return Move.annotate(move, isCheck, isInMate(positionAfterMove, opponentColor));
 
     }
 
-    protected List<String> findValidQueenMoves(String[][] grid, int[] start, boolean ignoreCheck,
-            boolean includeAnnotations) {
-        List<String> result = new ArrayList<String>();
-        result.addAll(findValidRookMoves(grid, start, ignoreCheck, includeAnnotations));
-        result.addAll(findValidBishopMoves(grid, start, ignoreCheck, includeAnnotations));
-        return result;
+    /**
+     * Formats packed moves in modified SAN, e.g. for a response
+     * 
+     * @param moves the packed moves to format
+     * @return the formatted moves, in the same order
+     */
+    protected List<String> toMoveStrings(IntMoveList moves) {
+
+        List<String> moveStrings = new ArrayList<String>(moves.size());
+
+        for (int i = 0; i < moves.size(); i++) {
+            moveStrings.add(MoveDTO.fromMove(moves.get(i)).toString());
+        }
+
+        return moveStrings;
+
     }
 
-    protected List<String> findValidPawnMoves(String[][] grid, Optional<String[]> previousMoves, int[] start,
-            boolean ignoreCheck, boolean includeAnnotations) {
+    /**
+     * Creates a Position from the given FEN, with the given player to move
+     * 
+     * @param fen        the FEN of the Position
+     * @param sideToMove the color of the player to move
+     * @return the Position
+     */
+    protected Position toPosition(String fen, int sideToMove) {
 
-        int x = start[0], y = start[1];
+        Position position = FEN.parse(fen);
 
-        List<String> movesList = new ArrayList<String>();
+        position.setSideToMove(sideToMove);
 
-        String[][] gridAfterMove = Arrays.stream(grid).map(row -> row.clone()).toArray(String[][]::new);
+        return position;
 
-        String playerColor = grid[y][x].equals(grid[y][x].toLowerCase()) ? "b" : "w";
-        String opponentColor = grid[y][x].equals(grid[y][x].toLowerCase()) ? "w" : "b";
+    }
 
-        int[] increment = playerColor.equals("w") ? new int[] { 0, -1 } : new int[] { 0, 1 };
+    /**
+     * Creates the Position of the given Game, with the castling rights, en
+     * passant square and halfmove clock kept on the Game. Games saved before these
+     * were kept have them worked out from their moves instead
+     * 
+     * @param game the Game to get the Position of
+     * @return the Position
+     */
+    protected Position toPosition(Game game) {
 
-        for (int[] dir : new int[][] {
-                new int[] { 1, 1 * increment[1] },
-                new int[] { -1, 1 * increment[1] },
-                new int[] { 0, 1 * increment[1] },
-                new int[] { 0, 2 * increment[1] } }) {
+        int plyCount = getPlyCount(game);
 
-            int x2 = x + dir[0], y2 = y + dir[1];
+        Position position = toPosition(game.getFEN(), plyCount % 2 == 0 ? Position.WHITE : Position.BLACK);
+        position.setFullmoveNumber(plyCount / 2 + 1);
 
-            // If the dest is out of bounds
-            if (0 > x2 || x2 >= grid[0].length || 0 > y2 || y2 >= grid.length) {
-                continue;
-            }
+        if (game.getCastlingRights() == null) {
+            applyMoveHistory(position, game.getMoves().split(" "));
+            return position;
+        }
 
-            // If the dest is occupied by another piece of the same color
-            if (isSameColorPiece(grid, x, y, x2, y2)) {
-                continue;
-            }
+        // a right can't outlast its king or rook leaving their starting squares
+        position.setCastlingRights(game.getCastlingRights() & position.inferCastlingRights());
+        if (game.getEnPassantSquare() != null) {
+            position.setEnPassantSquare(game.getEnPassantSquare());
+        }
+        if (game.getHalfmoveClock() != null) {
+            position.setHalfmoveClock(game.getHalfmoveClock());
+        }
 
-            // If the move is diagonal, but the dest is empty
-            if (dir[0] != 0 && grid[y2][x2].trim().equals("")) {
-                continue;
-            }
+        return position;
 
-            // If the move is not diagonal but the dest is not empty
-            if (dir[0] == 0 && !grid[y2][x2].trim().equals("")) {
-                continue;
-            }
+    }
 
-            // If the move is forward 2, but the space it's skipping is not empty
-            if (Math.abs(dir[1]) > 1 && !grid[y + increment[1]][x2].trim().equals("")) {
-                continue;
-            }
+    /**
+     * @param game the Game to count the plies of
+     * @return the number of plies played, counted from the moves if the Game
+     *         predates keeping it
+     */
+    protected int getPlyCount(Game game) {
 
-            // If the move is forward 2, but the pawn isn't on its starting rank
-            if (Math.abs(dir[1]) > 1 && !(y - dir[1] < 0 || y - dir[1] >= grid.length)) {
-                continue;
+        if (game.getPlyCount() != null) {
+            return game.getPlyCount();
+        }
+
+        int plyCount = 0;
+        for (String move : game.getMoves().split(" ")) {
+            // move numbers like "12." aren't plies
+            if (!move.isEmpty() && !move.endsWith(".")) {
+                plyCount++;
             }
+        }
+        return plyCount;
+
+    }
 
-            gridAfterMove[y2][x2] = grid[y][x];
-            gridAfterMove[y][x] = " ";
+    /**
+     * Replays the GameMoves that were inserted after the Game was last written
+     * onto it, e.g. if writing the Game failed, since GameMoves and Games are
+     * written in separate transactions. The FEN, castling rights, en passant
+     * square, halfmove clock, ply count, and result of the Game are set from
+     * the Position after them, while its move list is left to
+     * {@link #appendMoves(Game, List)}
+     * 
+     * @param game      the Game as it was last written, before its GameMoves are
+     *                  appended to its move list
+     * @param gameMoves the GameMoves of the Game, ordered by ply
+     * @return the number of GameMoves replayed
+     */
+    protected int replayUnwrittenMoves(Game game, List<GameMove> gameMoves) {
 
-            // If the move leaves the king in check
-            if (!ignoreCheck && isInCheck(gridAfterMove, playerColor)) {
-                gridAfterMove[y][x] = grid[y][x];
-                gridAfterMove[y2][x2] = grid[y2][x2];
-                continue;
-            }
+        int plyCount = getPlyCount(game);
 
-            MoveDTO move = new MoveDTO();
+        // Only the moves straight after the last written ply can be replayed
+        int first = 0;
+        while (first < gameMoves.size() && gameMoves.get(first).getPly() < plyCount) {
+            first++;
+        }
+        int last = first;
+        while (last < gameMoves.size() && gameMoves.get(last).getPly() == plyCount + last - first) {
+            last++;
+        }
+        if (last == first) {
+            return 0;
+        }
 
-            move.setPiece(grid[y][x]);
-            move.setStartSquare(new int[] { x, y });
-            move.setDestSquare(new int[] { x2, y2 });
-            if (includeAnnotations) {
-                move.setIsCapture(!grid[y2][x2].equals(" "));
-                move.setIsCheck(isInCheck(gridAfterMove, opponentColor));
-                boolean hasNoMoves = isInMate(gridAfterMove, opponentColor);
-                move.setIsMate(move.getIsCheck() && hasNoMoves);
-                move.setIsStalemate(!move.getIsCheck() && hasNoMoves);
+        Position position = toPosition(game);
+        int packedMove = 0;
+        for (int i = first; i < last; i++) {
+            packedMove = gameMoves.get(i).getMove();
+            position.setSideToMove(Position.colorOf(Move.piece(packedMove)));
+            position.makeMove(packedMove);
+        }
+
+        game.setFEN(position.toFEN());
+        game.setZobristKey(position.getHash());
+        game.setCastlingRights(position.getCastlingRights());
+        game.setEnPassantSquare(position.getEnPassantSquare());
+        game.setHalfmoveClock(position.getHalfmoveClock());
+        game.setPlyCount(plyCount + last - first);
+        if (Move.hasFlag(packedMove, Move.MATE)) {
+            game.setResult(Position.colorOf(Move.piece(packedMove)) == Position.WHITE ? "1-0" : "0-1");
+            game.setFinishedAt(new Date());
+        } else if (Move.hasFlag(packedMove, Move.STALEMATE)) {
+            game.setResult("1/2-1/2");
+            game.setFinishedAt(new Date());
+        }
+
+        return last - first;
+
+    }
+
+    /**
+     * Appends GameMoves, read from the game_moves table, to the move list and
+     * move times of a Game, after any moves stored on the Game itself
+     * 
+     * @param game      the Game the moves belong to
+     * @param gameMoves the GameMoves of the Game, ordered by ply
+     */
+    protected void appendMoves(Game game, List<GameMove> gameMoves) {
+
+        if (gameMoves.isEmpty()) {
+            return;
+        }
+
+        StringBuilder moves = new StringBuilder(game.getMoves());
+        StringBuilder moveTimes = new StringBuilder(game.getMoveTimes());
+        for (GameMove gameMove : gameMoves) {
+            if (moves.length() > 0) {
+                moves.append(' ');
+                moveTimes.append(' ');
             }
+            moves.append(MoveDTO.fromMove(gameMove.getMove()).toString());
+            moveTimes.append(gameMove.getClockMillis());
+        }
+        game.setMoves(moves.toString());
+        game.setMoveTimes(moveTimes.toString());
 
-            movesList.add(move.toString());
+    }
 
-            gridAfterMove[y][x] = grid[y][x];
-            gridAfterMove[y2][x2] = grid[y2][x2];
+    /**
+     * @param game the summary of the last Game of a page
+     * @return the cursor of the page after it: the date in milliseconds and UUID
+     *         of the Game, as an opaque URL-safe string
+     */
+    protected String encodeCursor(GameSummaryDTO game) {
+        String cursor = game.getDate().getTime() + ":" + game.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
 
+    /**
+     * @param cursor a cursor made by {@link #encodeCursor(GameSummaryDTO)}
+     * @return the date in milliseconds and UUID of the last Game of the page
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    protected String[] decodeCursor(String cursor) {
+
+        try {
+            String[] fields = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+            Long.parseLong(fields[0]);
+            UUID.fromString(fields[1]);
+            return fields;
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid cursor");
         }
 
-        // Check for en passant
-        if (previousMoves.isPresent()) {
+    }
+
+    /**
+     * Sets the move list and move times of a finished Game from its encoded moves,
+     * replaying them from the starting position
+     * 
+     * @param game the Game, which must have encoded moves
+     */
+    protected void decodeMoves(Game game) {
+
+        StringBuilder moves = new StringBuilder();
+        StringBuilder moveTimes = new StringBuilder();
+        MoveListCodec.decode(game.getMoveData(), FEN.parse(FEN.STARTING_POSITION), (move, clockMillis) -> {
+            if (moves.length() > 0) {
+                moves.append(' ');
+                moveTimes.append(' ');
+            }
+            moves.append(MoveDTO.fromMove(move).toString());
+            moveTimes.append(clockMillis);
+        });
+        game.setMoves(moves.toString());
+        game.setMoveTimes(moveTimes.toString());
 
-            String[] previousMovesList = previousMoves.get();
+    }
 
-            String previousMove = previousMovesList[previousMovesList.length - 1];
+    /**
+     * Encodes the moves of a Game that has ended onto it, from its GameMoves, and
+     * writes it, so that reading it back needs neither its GameMoves nor parsing
+     * its moves. Games with moves from before GameMoves were kept, or whose
+     * GameMoves haven't all been written, are left as they are
+     * 
+     * @param gameId the UUID of the Game
+     * @param game   the Game, which must have ended
+     */
+    protected void archiveMoves(UUID gameId, Game game) {
 
-            // if the last move was not a pawn move
-            if (!previousMove.toLowerCase().contains("p")) {
-                return movesList;
+        List<GameMove> gameMoves = gameMoveRepo.getAllByGameId(gameId);
+
+        synchronized (game) {
+
+            if (gameMoves.isEmpty() || gameMoves.size() != getPlyCount(game)) {
+                return;
             }
 
-            // if the last move was a capture
-            if (previousMove.contains("x")) {
-                return movesList;
+            IntMoveList moves = new IntMoveList();
+            int[] clockMillis = new int[gameMoves.size()];
+            for (int ply = 0; ply < gameMoves.size(); ply++) {
+                moves.add(gameMoves.get(ply).getMove());
+                clockMillis[ply] = gameMoves.get(ply).getClockMillis();
             }
 
-            int prevRank1, prevRank2, prevX, prevY;
+            try {
+                game.setMoveData(MoveListCodec.encode(moves, clockMillis));
+            } catch (IllegalArgumentException e) {
+                return;
+            }
+            gameWrites.markDirty(gameId, new Game(game));
+
+        }
+
+        gameWrites.flush();
+
+    }
 
-            prevRank1 = Integer.parseInt(previousMove.substring(2, 3));
-            prevRank2 = Integer.parseInt(previousMove.substring(4, 5));
+    /**
+     * Works out the castling rights and en passant square of a Position from the
+     * moves leading to it, for Games and FENs which don't have them. A castling
+     * right is lost once its king moves, or a move starts or ends on its rook's
+     * corner. The en passant square is only set if the last move is a pawn moving
+     * two squares
+     * 
+     * @param position      the Position to update
+     * @param previousMoves the moves leading to the Position, in modified SAN
+     */
+    protected void applyMoveHistory(Position position, String[] previousMoves) {
 
-            prevY = Math.abs(prevRank2 - 8);
-            prevX = previousMove.charAt(1) - 'a';
+        int rights = position.inferCastlingRights();
 
-            // if the current pawns rank is not the same as the last moves rank
-            if (Math.abs(y - 8) != prevRank2) {
-                return movesList;
+        for (String move : previousMoves) {
+            if (move.contains("K")) {
+                rights &= ~(Position.WHITE_KINGSIDE | Position.WHITE_QUEENSIDE);
+            }
+            if (move.contains("k")) {
+                rights &= ~(Position.BLACK_KINGSIDE | Position.BLACK_QUEENSIDE);
+            }
+            if (move.contains("h1")) {
+                rights &= ~Position.WHITE_KINGSIDE;
+            }
+            if (move.contains("a1")) {
+                rights &= ~Position.WHITE_QUEENSIDE;
+            }
+            if (move.contains("h8")) {
+                rights &= ~Position.BLACK_KINGSIDE;
             }
+            if (move.contains("a8")) {
+                rights &= ~Position.BLACK_QUEENSIDE;
+            }
+        }
 
-            // if the current pawn is not offset by 1 file from the last pawn
-            if (Math.abs(x - prevX) != 1) {
-                return movesList;
+        position.setCastlingRights(rights);
+
+        // e.g. "Pe2e4" or "pd7d5", possibly annotated
+        String lastMove = previousMoves.length > 0 ? previousMoves[previousMoves.length - 1] : "";
+        int enPassantSquare = Position.NO_SQUARE;
+        if (lastMove.length() >= 5 && lastMove.charAt(1) >= 'a' && lastMove.charAt(1) <= 'h'
+                && lastMove.charAt(1) == lastMove.charAt(3)) {
+            int x = lastMove.charAt(1) - 'a';
+            if (lastMove.charAt(0) == 'P' && lastMove.charAt(2) == '2' && lastMove.charAt(4) == '4') {
+                enPassantSquare = Bitboards.square(x, 5);
+            } else if (lastMove.charAt(0) == 'p' && lastMove.charAt(2) == '7' && lastMove.charAt(4) == '5') {
+                enPassantSquare = Bitboards.square(x, 2);
             }
+        }
+        position.setEnPassantSquare(enPassantSquare);
+
+    }
 
-            if (playerColor.equals("w") && (prevRank1 != 7 || prevRank1 - prevRank2 != 2)) {
+    /**
+     * Packs a move for the given Position, working out its capture, en passant,
+     * castle and promotion from the pieces on the board
+     * 
+     * @param position the Position before the move
+     * @param move     the move to pack
+     * @return the packed move, without annotations
+     * @throws IllegalArgumentException if there is no piece on the starting square
+     */
+    protected int toPackedMove(Position position, MoveDTO move) {
 
-                // if the last move was not from rank 7 to rank 5
-                return movesList;
+        int[] start = move.getStartSquare();
+        int[] end = move.getDestSquare();
 
-            } else if (playerColor.equals("b") && (prevRank1 != 2 || prevRank1 - prevRank2 != -2)) {
+        int from = Bitboards.square(start[0], start[1]);
+        int to = Bitboards.square(end[0], end[1]);
 
-                // if the last move was not from rank 1 to rank 3
-                return movesList;
+        int piece = position.pieceAt(from);
+        if (piece == Position.NO_PIECE) {
+            throw new IllegalArgumentException("No piece on the starting square");
+        }
 
+        int captured = position.pieceAt(to);
+        int promotion = Position.NO_PIECE;
+        int flags = 0;
+
+        if (Position.typeOf(piece) == Position.PAWN) {
+            // a diagonal pawn move onto an empty square is an en passant
+            if (start[0] != end[0] && captured == Position.NO_PIECE) {
+                captured = position.pieceAt(Bitboards.square(end[0], start[1]));
+                flags |= Move.EN_PASSANT;
+            }
+            if (move.getPromotion() != null && move.getPromotion().length() == 1 && end[1] % 7 == 0) {
+                promotion = Position.pieceFromChar(move.getPromotion().charAt(0));
             }
+        } else if (Position.typeOf(piece) == Position.KING && Math.abs(start[0] - end[0]) >= 2) {
+            flags |= Move.CASTLE;
+        }
 
-            // update the gridAfterMove
-            gridAfterMove[y][x] = " ";
-            gridAfterMove[prevY][prevX] = " ";
-            gridAfterMove[y + increment[1]][prevX] = grid[y][x];
+        return Move.of(from, to, piece, captured, promotion, flags);
 
-            // if ignoreCheck or the move doesn't leave the user in check, it is valid
-            if (ignoreCheck || !isInCheck(gridAfterMove, playerColor)) {
+    }
 
-                MoveDTO move = new MoveDTO();
+    /**
+     * Checks a single move against the given Position: the move must be on the
+     * board, it must be the player's turn, the piece must be theirs, it must be
+     * able to reach the destination, and it must not leave their king in check.
+     * Only this move is looked at, so no other moves are generated
+     * 
+     * @param position    the Position before the move. It is modified while the
+     *                    move is simulated, but left as it was found
+     * @param move        the move to check
+     * @param playerColor the color of the player making the move
+     * @return true if the move is valid
+     */
+    protected boolean isValidMove(Position position, MoveDTO move, int playerColor) {
 
-                move.setPiece(grid[y][x]);
-                move.setStartSquare(new int[] { x, y });
-                move.setDestSquare(new int[] { prevX, y + increment[1] });
+        int[] start = move.getStartSquare();
+        int[] end = move.getDestSquare();
 
-                if (includeAnnotations) {
-                    move.setIsCapture(true);
-                    move.setIsCheck(isInCheck(gridAfterMove, opponentColor));
-                    boolean hasNoMoves = isInMate(gridAfterMove, opponentColor);
-                    move.setIsMate(move.getIsCheck() && hasNoMoves);
-                    move.setIsStalemate(!move.getIsCheck() && hasNoMoves);
-                }
+        if (move.getPiece() == null || move.getPiece().length() != 1 || start == null || end == null
+                || !Bitboards.isOnBoard(start[0], start[1]) || !Bitboards.isOnBoard(end[0], end[1])) {
+            return false;
+        }
+
+        // Ensure it is the player's turn, and the piece is theirs
+        int from = Bitboards.square(start[0], start[1]);
+        int to = Bitboards.square(end[0], end[1]);
+        int piece = position.pieceAt(from);
+        if (position.getSideToMove() != playerColor || piece == Position.NO_PIECE
+                || Position.colorOf(piece) != playerColor
+                || piece != Position.pieceFromChar(move.getPiece().charAt(0))) {
+            return false;
+        }
 
-                movesList.add(move.toString());
+        int packedMove = toPackedMove(position, move);
+        LegalMoveMasks masks = LegalMoveMasks.of(position, playerColor);
 
+        // Castles and en passants are checked against the few the piece can make
+        if (Move.hasFlag(packedMove, Move.CASTLE) || Move.hasFlag(packedMove, Move.EN_PASSANT)) {
+            IntMoveList moves = new IntMoveList();
+            if (Move.hasFlag(packedMove, Move.CASTLE)) {
+                findValidCastlingMoves(position, from, masks, false, moves);
+            } else {
+                findValidEnPassantMoves(position, from, masks, false, moves);
+            }
+            for (int i = 0; i < moves.size(); i++) {
+                if (Move.to(moves.get(i)) == to) {
+                    return true;
+                }
             }
+            return false;
+        }
+
+        // Ensure the piece can reach the destination without breaking a pin or
+        // ignoring a check
+        if (masks.legalTargets(from, findPieceTargets(position, from) & (1L << to)) == 0) {
+            return false;
+        }
 
-            // reset the gridAfterMove
-            gridAfterMove[y][x] = grid[y][x];
-            gridAfterMove[prevY][prevX] = grid[prevY][prevX];
-            gridAfterMove[y + increment[1]][prevX] = grid[y + increment[1]][prevX];
+        // Pawns reaching the last rank must promote to a piece of their own color
+        int promotion = Move.promotion(packedMove);
+        if (Position.typeOf(piece) == Position.PAWN && end[1] % 7 == 0) {
+            if (promotion == Position.NO_PIECE || Position.colorOf(promotion) != playerColor
+                    || Position.typeOf(promotion) == Position.PAWN || Position.typeOf(promotion) == Position.KING) {
+                return false;
+            }
+        }
 
+        if (!masks.requiresSimulation()) {
+            return true;
         }
 
-        return movesList;
+        // if the masks can't tell, simulate the move to see if it leaves the king
+        // checked
+        position.makeMove(packedMove);
+        boolean isValid = !isInCheck(position, playerColor);
+        position.unmakeMove();
+
+        return isValid;
 
     }
 
@@ -1030,32 +1901,106 @@ public class GameService {
 
     protected boolean isInCheck(String[][] grid, String playerColor) {
 
-        List<String> opponentValidMoves = getValidMoves(grid, Optional.ofNullable(null), Optional.ofNullable(null),
-                Optional.ofNullable(playerColor.equals("w") ? "b" : "w"), true, false);
+        int color = toColor(playerColor);
 
-        String kingLocation = "";
+        return color >= 0 && isInCheck(Position.fromGrid(grid), color);
 
-        for (int i = 0; i < grid.length; i++) {
-            for (int j = 0; j < grid[0].length; j++) {
-                if ((playerColor.equals("w") && grid[i][j].equals("K")) ||
-                        (playerColor.equals("b") && grid[i][j].equals("k"))) {
-                    kingLocation = "" + (char) (j + 'a') + Math.abs(i - 8);
-                }
-            }
+    }
+
+    protected boolean isInCheck(Position position, int playerColor) {
+
+        int kingSquare = position.kingSquare(playerColor);
+
+        return kingSquare >= 0 && position.isSquareAttacked(kingSquare, 1 - playerColor);
+
+    }
+
+    protected boolean isInMate(String[][] grid, String playerColor) {
+
+        return isInMate(Position.fromGrid(grid), toColor(playerColor));
+
+    }
+
+    protected boolean isInMate(Position position, int playerColor) {
+
+        return playerColor < 0 || !hasValidMove(position, playerColor);
+
+    }
+
+    /**
+     * Checks if the given color has any valid move, stopping at the first one
+     * found. Castling isn't considered, since a king that can castle can also
+     * step towards its rook
+     * 
+     * @param position    the Position to look at
+     * @param playerColor the color to find a move for
+     * @return true if the color has a valid move
+     */
+    protected boolean hasValidMove(Position position, int playerColor) {
+
+        LegalMoveMasks masks = LegalMoveMasks.of(position, playerColor);
+
+        if (masks.requiresSimulation()) {
+            IntMoveList moves = new IntMoveList();
+            generateValidMoves(position, Optional.ofNullable(null),
+                    Optional.ofNullable(playerColor == Position.WHITE ? "w" : "b"), false, false, moves);
+            return !moves.isEmpty();
         }
 
-        for (String move : opponentValidMoves) {
-            if (move.substring(3, 5).equals(kingLocation)) {
+        long pieces = position.getColorOccupancy(playerColor);
+        while (pieces != 0) {
+            int start = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            if (masks.legalTargets(start, findPieceTargets(position, start)) != 0) {
                 return true;
             }
         }
+
+        // an en passant can be the only way out, e.g. by taking a checking pawn
+        int enPassantSquare = position.getEnPassantSquare();
+        if (enPassantSquare != Position.NO_SQUARE) {
+            IntMoveList moves = new IntMoveList();
+            long pawns = position.getPieces(playerColor, Position.PAWN)
+                    & Bitboards.PAWN_ATTACKS[1 - playerColor][enPassantSquare];
+            while (pawns != 0) {
+                int start = Long.numberOfTrailingZeros(pawns);
+                pawns &= pawns - 1;
+                findValidEnPassantMoves(position, start, masks, false, moves);
+            }
+            return !moves.isEmpty();
+        }
+
         return false;
+
     }
 
-    protected boolean isInMate(String[][] grid, String playerColor) {
+    /**
+     * @param playerColor "w" or "b"
+     * @return the matching {@link Position} color, or -1 if the color is unknown
+     */
+    protected int toColor(String playerColor) {
+        return switch (playerColor) {
+            case "w" -> Position.WHITE;
+            case "b" -> Position.BLACK;
+            default -> -1;
+        };
+    }
 
-        return getValidMoves(grid, Optional.ofNullable(null), Optional.ofNullable(null),
-                Optional.ofNullable(playerColor), false, false).size() == 0;
+    /**
+     * Gets the colors to find valid moves for, white first
+     * 
+     * @param playerColor the optional color of the pieces
+     * @return the colors, in the order to search them
+     */
+    protected int[] getPlayerColors(Optional<String> playerColor) {
+
+        if (!playerColor.isPresent()) {
+            return new int[] { Position.WHITE, Position.BLACK };
+        }
+
+        int color = toColor(playerColor.get());
+
+        return color < 0 ? new int[0] : new int[] { color };
 
     }
 
@@ -1078,20 +2023,48 @@ public class GameService {
 
     }
 
-    protected String[][] FENToGrid(String FEN) {
-        // in order to allow for bigger board sizes this needs to be revised
-        for (int index = 1; index <= 9; index++) {
-            FEN = FEN.replace(Integer.toString(index), " ".repeat(index));
+    protected String[][] FENToGrid(String fen) {
+
+        Position position = FEN.parse(fen);
+
+        String[][] grid = new String[8][8];
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                int piece = position.pieceAt(Bitboards.square(x, y));
+                grid[y][x] = piece == Position.NO_PIECE ? " " : String.valueOf(Position.charOf(piece));
+            }
         }
-        return Arrays.stream(FEN.split("/")).map(row -> row.split("")).toArray(String[][]::new);
+        return grid;
+
     }
 
     protected String gridToFEN(String[][] grid) {
-        String result = String.join("/", Arrays.stream(grid).map(row -> String.join("", row)).toArray(String[]::new));
-        for (int i = 8; i >= 1; i--) {
-            result = result.replace(" ".repeat(i), "" + i);
+
+        StringBuilder fen = new StringBuilder(FEN.MAX_PLACEMENT_LENGTH);
+
+        for (int y = 0; y < grid.length; y++) {
+            if (y > 0) {
+                fen.append('/');
+            }
+            int empty = 0;
+            for (String square : grid[y]) {
+                if (square.equals(" ")) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    fen.append(empty);
+                    empty = 0;
+                }
+                fen.append(square);
+            }
+            if (empty > 0) {
+                fen.append(empty);
+            }
         }
-        return result;
+
+        return fen.toString();
+
     }
 
     protected boolean isSameColorPiece(String[][] grid, int x1, int y1, int x2, int y2) {
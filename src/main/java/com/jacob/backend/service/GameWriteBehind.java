@@ -0,0 +1,647 @@
+package com.jacob.backend.service;
+
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import com.jacob.backend.data.Model.Game;
+import com.jacob.backend.data.Model.GameMove;
+
+import lombok.extern.apachecommons.CommonsLog;
+
+/**
+ * Write-behind stage for Game updates. Instead of writing a Game on every move,
+ * the move appends a GameMove and marks the Game dirty, and both are written
+ * together in batches on a short interval, or as soon as a batch is full. Only
+ * the latest state of each Game is kept, so a Game moved on many times between
+ * flushes is written once, while every GameMove is inserted. A Game is only
+ * written once all of its GameMoves have been, so its row is never ahead of
+ * them
+ * <p>
+ * The queue of GameMoves is bounded. Room in it is reserved before a move is
+ * made, waiting a short while if it is full, and the move is rejected if it
+ * stays full, so callers are held back to the rate the database keeps up with
+ * without ever writing on their own thread
+ * <p>
+ * Nothing is dropped. When the database can't be reached, everything waits, and
+ * is tried again after a backoff that doubles up to {@link #MAX_BACKOFF}. When a
+ * batch fails for its data, its rows are written one at a time, and those that
+ * still fail are tried again after the backoff, in the order they were played,
+ * while the rest are written. Failures are logged on every try, along with how
+ * long writes have been failing
+ */
+@CommonsLog
+public class GameWriteBehind {
+
+    // #region variables
+
+    /**
+     * the longest wait before trying writes that keep failing again
+     */
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(30);
+
+    /**
+     * inserts a batch of GameMoves
+     */
+    private final Consumer<List<GameMove>> moveWriter;
+
+    /**
+     * writes a batch of Games
+     */
+    private final Consumer<List<Game>> gameWriter;
+
+    /**
+     * the most GameMoves or Games written together
+     */
+    private final int batchSize;
+
+    /**
+     * how long a move waits for room in the queue of GameMoves before it is
+     * rejected
+     */
+    private final Duration offerTimeout;
+
+    /**
+     * how long a GameMove or dirty Game waits to be written at most, unless
+     * writing fails
+     */
+    private final Duration interval;
+
+    /**
+     * how long shutting down keeps trying writes that fail
+     */
+    private final Duration shutdownTimeout;
+
+    /**
+     * the GameMoves waiting to be inserted, in the order they were played
+     */
+    private final BlockingQueue<GameMove> appended;
+
+    /**
+     * the room in the queue of GameMoves, reserved before a move is made so
+     * appending it never waits, and freed once its GameMove is inserted
+     */
+    private final Semaphore slots;
+
+    /**
+     * the number of GameMoves of each Game that haven't been inserted, by UUID.
+     * Games with any aren't written until they are
+     */
+    private final Map<UUID, Integer> pendingMoves = new ConcurrentHashMap<>();
+
+    /**
+     * the latest unwritten state of each dirty Game, by UUID
+     */
+    private final Map<UUID, Game> dirty = new ConcurrentHashMap<>();
+
+    /**
+     * the GameMoves that failed to insert, in the order they were played, tried
+     * again before any others once the backoff is over. Only used while flushing
+     */
+    private final List<GameMove> failedMoves = new ArrayList<>();
+
+    /**
+     * the Games that failed to write, by UUID, tried again once the backoff is
+     * over unless a newer state of them has been marked dirty since
+     */
+    private final Map<UUID, Game> failedGames = new ConcurrentHashMap<>();
+
+    /**
+     * when failed writes are next tried, from {@link System#nanoTime()}
+     */
+    private long retryAt = System.nanoTime();
+
+    /**
+     * how long to wait before trying failed writes again
+     */
+    private Duration backoff;
+
+    /**
+     * when writes started failing, in milliseconds, or 0 if they aren't
+     */
+    private long failingSince;
+
+    /**
+     * if the database couldn't be reached on the last try, so nothing is written
+     * until the backoff is over
+     */
+    private boolean unavailable;
+
+    /**
+     * if a write has failed during the current flush
+     */
+    private boolean failed;
+
+    /**
+     * if a flush has been handed to the scheduler and hasn't started yet
+     */
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    /**
+     * flushes on the interval, started when the first Game is marked dirty
+     */
+    private volatile ScheduledExecutorService scheduler;
+
+    // #endregion
+
+    /**
+     * Creates a new GameWriteBehind with nothing waiting to be written
+     *
+     * @param moveWriter      inserts a batch of GameMoves, e.g. in one
+     *                        transaction
+     * @param gameWriter      writes a batch of Games, e.g. in one transaction
+     * @param batchSize       the most GameMoves or Games written together
+     * @param capacity        the most GameMoves waiting to be inserted, including
+     *                        those that failed
+     * @param offerTimeout    how long a move waits for room in the queue of
+     *                        GameMoves before it is rejected
+     * @param interval        how often waiting GameMoves and dirty Games are
+     *                        written
+     * @param shutdownTimeout how long shutting down keeps trying writes that fail
+     */
+    public GameWriteBehind(Consumer<List<GameMove>> moveWriter, Consumer<List<Game>> gameWriter, int batchSize,
+            int capacity, Duration offerTimeout, Duration interval, Duration shutdownTimeout) {
+        this.moveWriter = moveWriter;
+        this.gameWriter = gameWriter;
+        this.batchSize = batchSize;
+        this.offerTimeout = offerTimeout;
+        this.interval = interval;
+        this.shutdownTimeout = shutdownTimeout;
+        this.appended = new ArrayBlockingQueue<>(capacity);
+        this.slots = new Semaphore(capacity);
+    }
+
+    /**
+     * Reserves room for a GameMove, waiting for up to the offer timeout while the
+     * queue is full. Room is reserved before taking a Game's lock, so nothing
+     * waits on the database while holding it
+     *
+     * @return true if room was reserved, which must then be used by
+     *         {@link #append(GameMove)} or given back by {@link #release()}, or
+     *         false if the queue stayed full and the move should be rejected
+     */
+    public boolean reserve() {
+
+        try {
+            return slots.tryAcquire(offerTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+    }
+
+    /**
+     * Gives back room reserved for a GameMove that wasn't appended, e.g. because
+     * its move was invalid
+     */
+    public void release() {
+        slots.release();
+    }
+
+    /**
+     * Marks a Game dirty, replacing any state of it still waiting to be written
+     *
+     * @param gameId the UUID of the Game
+     * @param game   the state of the Game to write, which mustn't change after
+     */
+    public void markDirty(UUID gameId, Game game) {
+
+        dirty.put(gameId, game);
+
+        requestFlushIfFull(dirty.size());
+
+    }
+
+    /**
+     * Adds a GameMove to be inserted, into room reserved for it by
+     * {@link #reserve()}, so it never waits
+     *
+     * @param move the GameMove
+     */
+    public void append(GameMove move) {
+
+        pendingMoves.merge(move.getGameId(), 1, Integer::sum);
+        appended.add(move);
+
+        requestFlushIfFull(appended.size());
+
+    }
+
+    /**
+     * @param gameId the UUID of the Game
+     * @return the state of the Game waiting to be written, or null if it isn't
+     *         dirty
+     */
+    public Game get(UUID gameId) {
+
+        Game game = dirty.get(gameId);
+        if (game != null) {
+            return game;
+        }
+
+        return failedGames.get(gameId);
+
+    }
+
+    /**
+     * Inserts every waiting GameMove, then writes every dirty Game whose
+     * GameMoves have all been inserted, in batches. Writes that failed before
+     * are tried first, once the backoff is over. Until then, nothing is written
+     * if the database couldn't be reached, and the rest is written otherwise
+     */
+    public synchronized void flush() {
+
+        flushRequested.set(false);
+        failed = false;
+
+        try {
+            if (System.nanoTime() - retryAt < 0) {
+                if (unavailable) {
+                    return;
+                }
+            } else {
+                // the database is found to be reachable again or not by the retry
+                unavailable = false;
+                if (!retryFailed()) {
+                    return;
+                }
+            }
+
+            if (insertAppended()) {
+                writeDirty();
+            }
+        } finally {
+            updateBackoff();
+        }
+
+    }
+
+    /**
+     * Stops flushing on the interval, and writes everything still waiting,
+     * trying writes that fail again until the shutdown timeout
+     */
+    public void shutdown() {
+
+        synchronized (this) {
+            if (scheduler != null) {
+                scheduler.shutdown();
+            }
+        }
+
+        long deadline = System.nanoTime() + shutdownTimeout.toNanos();
+        while (true) {
+
+            long wait;
+            synchronized (this) {
+                // the backoff is waited out here rather than by skipping writes
+                retryAt = System.nanoTime();
+                flush();
+                if (isEmpty()) {
+                    return;
+                }
+                wait = Math.min((backoff != null ? backoff : interval).toNanos(), deadline - System.nanoTime());
+                if (wait <= 0) {
+                    log.error("Shutting down with " + (appended.size() + failedMoves.size())
+                            + " 'GameMoves' and " + (dirty.size() + failedGames.size())
+                            + " 'Games' not written, after trying for " + shutdownTimeout.toSeconds() + "s");
+                    return;
+                }
+            }
+
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.error("Interrupted while writing 'Games' on shutdown, with some not written", e);
+                return;
+            }
+
+        }
+
+    }
+
+    /**
+     * @return the number of GameMoves and dirty Games waiting to be written, not
+     *         counting those that failed and are being tried again
+     */
+    public int size() {
+        return appended.size() + dirty.size();
+    }
+
+    /**
+     * @return the number of GameMoves and Games that failed to be written and are
+     *         being tried again
+     */
+    public synchronized int failedSize() {
+        return failedMoves.size() + failedGames.size();
+    }
+
+    /**
+     * Hands a flush to the scheduler once a batch is full
+     *
+     * @param size the number of GameMoves or dirty Games now waiting
+     */
+    private void requestFlushIfFull(int size) {
+
+        ScheduledExecutorService scheduler = scheduler();
+
+        if (size >= batchSize && flushRequested.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                // shutting down, which writes everything still waiting
+                flushRequested.set(false);
+            }
+        }
+
+    }
+
+    /**
+     * Puts the writes that failed before back in line, ahead of the rest
+     *
+     * @return false if the database couldn't be reached
+     */
+    private boolean retryFailed() {
+
+        // failed Games are written with the dirty ones, after their GameMoves,
+        // unless a newer state of them has been marked dirty since
+        for (UUID gameId : failedGames.keySet()) {
+            Game game = failedGames.remove(gameId);
+            if (game != null) {
+                dirty.putIfAbsent(gameId, game);
+            }
+        }
+
+        if (failedMoves.isEmpty()) {
+            return true;
+        }
+
+        List<GameMove> moves = new ArrayList<>(failedMoves);
+        failedMoves.clear();
+        for (int from = 0; from < moves.size(); from += batchSize) {
+            List<GameMove> batch = moves.subList(from, Math.min(from + batchSize, moves.size()));
+            if (!insert(batch)) {
+                failedMoves.addAll(moves.subList(from + batch.size(), moves.size()));
+                return false;
+            }
+        }
+        return true;
+
+    }
+
+    /**
+     * Inserts the waiting GameMoves in batches
+     *
+     * @return false if the database couldn't be reached
+     */
+    private boolean insertAppended() {
+
+        List<GameMove> moves = new ArrayList<>(batchSize);
+        while (appended.drainTo(moves, batchSize) > 0) {
+            if (!insert(moves)) {
+                return false;
+            }
+            moves = new ArrayList<>(batchSize);
+        }
+        return true;
+
+    }
+
+    /**
+     * Writes the dirty Games in batches, leaving those with GameMoves that
+     * haven't been inserted dirty, so their rows aren't written ahead of them
+     */
+    private void writeDirty() {
+
+        List<UUID> gameIds = new ArrayList<>(batchSize);
+        List<Game> games = new ArrayList<>(batchSize);
+
+        for (UUID gameId : dirty.keySet()) {
+            Game game = dirty.remove(gameId);
+            if (game == null) {
+                continue;
+            }
+            // a GameMove is appended before the state after it is marked dirty,
+            // so any in the state removed are already counted here
+            if (pendingMoves.containsKey(gameId)) {
+                dirty.putIfAbsent(gameId, game);
+                continue;
+            }
+            gameIds.add(gameId);
+            games.add(game);
+            if (games.size() == batchSize) {
+                if (!write(gameIds, games)) {
+                    return;
+                }
+                gameIds = new ArrayList<>(batchSize);
+                games = new ArrayList<>(batchSize);
+            }
+        }
+        if (!games.isEmpty()) {
+            write(gameIds, games);
+        }
+
+    }
+
+    /**
+     * Inserts a batch of GameMoves. If the batch fails for its data, they are
+     * inserted one at a time, and those that still fail are kept to be tried
+     * again, in order
+     *
+     * @param moves the GameMoves, in the order they were played
+     * @return false if the database couldn't be reached, in which case the
+     *         GameMoves are kept to be tried again
+     */
+    private boolean insert(List<GameMove> moves) {
+
+        try {
+            moveWriter.accept(moves);
+        } catch (RuntimeException e) {
+            boolean unreachable = isUnreachable(e);
+            if (unreachable || moves.size() == 1) {
+                log.error("Failed to insert " + describeMoves(moves) + ", retrying after a backoff", e);
+                failedMoves.addAll(moves);
+                fail(unreachable);
+                return !unreachable;
+            }
+            log.error("Failed to insert " + moves.size() + " 'GameMoves', inserting them one at a time", e);
+            for (int i = 0; i < moves.size(); i++) {
+                if (!insert(List.of(moves.get(i)))) {
+                    failedMoves.addAll(moves.subList(i + 1, moves.size()));
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        for (GameMove move : moves) {
+            pendingMoves.computeIfPresent(move.getGameId(), (gameId, count) -> count == 1 ? null : count - 1);
+            slots.release();
+        }
+        return true;
+
+    }
+
+    /**
+     * Writes a batch of Games. If the batch fails for its data, they are written
+     * one at a time, and those that still fail are kept to be tried again,
+     * unless a newer state of them has been marked dirty since
+     *
+     * @param gameIds the UUIDs of the Games
+     * @param games   the Games
+     * @return false if the database couldn't be reached, in which case the Games
+     *         are kept to be tried again
+     */
+    private boolean write(List<UUID> gameIds, List<Game> games) {
+
+        try {
+            gameWriter.accept(games);
+            return true;
+        } catch (RuntimeException e) {
+            boolean unreachable = isUnreachable(e);
+            if (unreachable || games.size() == 1) {
+                log.error("Failed to write " + (games.size() == 1 ? "'Game' with ID: " + gameIds.get(0)
+                        : games.size() + " 'Games'") + ", retrying after a backoff", e);
+                for (int i = 0; i < games.size(); i++) {
+                    if (!dirty.containsKey(gameIds.get(i))) {
+                        failedGames.put(gameIds.get(i), games.get(i));
+                    }
+                }
+                fail(unreachable);
+                return !unreachable;
+            }
+            log.error("Failed to write " + games.size() + " 'Games', writing them one at a time", e);
+            for (int i = 0; i < games.size(); i++) {
+                if (!write(gameIds.subList(i, i + 1), games.subList(i, i + 1))) {
+                    for (int j = i + 1; j < games.size(); j++) {
+                        dirty.putIfAbsent(gameIds.get(j), games.get(j));
+                    }
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+    /**
+     * Records that a write failed during the current flush
+     *
+     * @param unreachable if the database couldn't be reached
+     */
+    private void fail(boolean unreachable) {
+        failed = true;
+        unavailable |= unreachable;
+    }
+
+    /**
+     * Backs off further after a flush in which writes failed, or resets the
+     * backoff once nothing is left to try again
+     */
+    private void updateBackoff() {
+
+        if (failed) {
+            backoff = backoff == null ? interval : backoff.multipliedBy(2);
+            if (backoff.compareTo(MAX_BACKOFF) > 0) {
+                backoff = MAX_BACKOFF;
+            }
+            retryAt = System.nanoTime() + backoff.toNanos();
+            if (failingSince == 0) {
+                failingSince = System.currentTimeMillis();
+            }
+            String reason = unavailable ? ", as the database can't be reached" : "";
+            log.error("'Game' writes have been failing for " + (System.currentTimeMillis() - failingSince) / 1000
+                    + "s" + reason + ". " + (failedMoves.size() + appended.size()) + " 'GameMoves' and "
+                    + (failedGames.size() + dirty.size()) + " 'Games' are waiting, retrying in "
+                    + backoff.toMillis() + "ms");
+        } else if (failingSince != 0 && failedMoves.isEmpty() && failedGames.isEmpty()) {
+            log.info("'Game' writes recovered after failing for "
+                    + (System.currentTimeMillis() - failingSince) / 1000 + "s");
+            backoff = null;
+            failingSince = 0;
+        }
+
+    }
+
+    /**
+     * @return true if nothing is waiting to be written, including writes that
+     *         failed
+     */
+    private boolean isEmpty() {
+        return appended.isEmpty() && dirty.isEmpty() && failedMoves.isEmpty() && failedGames.isEmpty();
+    }
+
+    /**
+     * @param e the exception a write failed with
+     * @return true if the write failed because the database couldn't be reached,
+     *         rather than because of the rows written, so writing them one at a
+     *         time wouldn't help
+     */
+    private static boolean isUnreachable(Throwable e) {
+
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTransientException || cause instanceof SQLRecoverableException
+                    || cause instanceof SQLNonTransientConnectionException) {
+                return true;
+            }
+            // SQL state class 08 is a connection exception
+            if (cause instanceof SQLException sqlException && sqlException.getSQLState() != null
+                    && sqlException.getSQLState().startsWith("08")) {
+                return true;
+            }
+        }
+        return false;
+
+    }
+
+    private static String describeMoves(List<GameMove> moves) {
+
+        if (moves.size() > 1) {
+            return moves.size() + " 'GameMoves'";
+        }
+
+        GameMove move = moves.get(0);
+        return "'GameMove' with Game ID: " + move.getGameId() + ", ply: " + move.getPly();
+
+    }
+
+    private ScheduledExecutorService scheduler() {
+
+        ScheduledExecutorService scheduler = this.scheduler;
+        if (scheduler != null) {
+            return scheduler;
+        }
+
+        synchronized (this) {
+            if (this.scheduler == null) {
+                this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "game-write-behind");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                this.scheduler.scheduleWithFixedDelay(this::flush, interval.toMillis(), interval.toMillis(),
+                        TimeUnit.MILLISECONDS);
+            }
+            return this.scheduler;
+        }
+
+    }
+
+}
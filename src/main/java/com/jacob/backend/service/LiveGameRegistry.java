@@ -0,0 +1,85 @@
+package com.jacob.backend.service;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.jacob.backend.data.Model.Game;
+import com.jacob.backend.engine.Position;
+
+/**
+ * The authoritative state of the games in progress on this node, keyed by Game
+ * UUID. Each entry holds the Game, with its move list and clocks, along with
+ * its live Position, so moves are validated and applied in memory rather than
+ * reading the Game and parsing its FEN again for every move. Entries are
+ * removed when their game ends, or once they have gone idle
+ * <p>
+ * The Game of an entry is used as its lock: the Game and Position must only be
+ * read or changed while holding it
+ */
+public class LiveGameRegistry {
+
+    /**
+     * the live games, backed by a concurrent map, expiring once idle
+     */
+    private final Cache<UUID, LiveGame> games;
+
+    /**
+     * Creates a new, empty LiveGameRegistry
+     *
+     * @param idleTimeout how long a game is kept after it was last used
+     */
+    public LiveGameRegistry(Duration idleTimeout) {
+        games = Caffeine.newBuilder()
+                .expireAfterAccess(idleTimeout)
+                .build();
+    }
+
+    /**
+     * @param gameId the UUID of the Game
+     * @return the live game, or null if it isn't live on this node
+     */
+    public LiveGame get(UUID gameId) {
+        return games.getIfPresent(gameId);
+    }
+
+    /**
+     * Makes a Game live, unless it already is
+     *
+     * @param gameId   the UUID of the Game
+     * @param game     the Game, which must still be in progress
+     * @param position the current Position of the Game
+     * @return the live game, which is the one already registered if another
+     *         thread got there first
+     */
+    public LiveGame register(UUID gameId, Game game, Position position) {
+        return games.asMap().computeIfAbsent(gameId, id -> new LiveGame(game, position));
+    }
+
+    /**
+     * Removes a Game, e.g. once it has ended
+     *
+     * @param gameId the UUID of the Game
+     */
+    public void evict(UUID gameId) {
+        games.invalidate(gameId);
+    }
+
+    /**
+     * @return the number of live games
+     */
+    public long size() {
+        return games.estimatedSize();
+    }
+
+    /**
+     * A game in progress
+     *
+     * @param game     the Game, with its move list and clocks
+     * @param position the current Position of the Game
+     */
+    public record LiveGame(Game game, Position position) {
+    }
+
+}
@@ -37,22 +37,14 @@ public class SessionService {
     }
 
     /**
-     * Creates a new Session for the given username
+     * Creates a new Session for the given username, replacing any Session the
+     * user already has
      * 
      * @param username the username to store in the Session
      * @return the UUID of the newly created Session
      */
     public String create(String username) {
-
-        sessionRepo.deleteByUsername(username);
-
-        Session session = new Session();
-        session.setUsername(username);
-
-        sessionRepo.save(session);
-
-        return session.getId();
-
+        return sessionRepo.upsertByUsername(username).toString();
     }
 
     /**
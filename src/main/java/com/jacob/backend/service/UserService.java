@@ -2,7 +2,9 @@ package com.jacob.backend.service;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.function.ToLongFunction;
 
+import org.hibernate.stat.CacheRegionStatistics;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -14,8 +16,12 @@ import com.jacob.backend.repository.interfaces.UserRepositoryInterface;
 import com.jacob.backend.responses.exceptions.AlreadyFoundException;
 import com.jacob.backend.responses.exceptions.PasswordMismatchException;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
 @Service
-public class UserService {
+public class UserService implements MeterBinder {
 
     @Autowired
     private UserRepositoryInterface userRepo;
@@ -38,6 +44,49 @@ public class UserService {
         return userRepo.getByUsername(username);
     }
 
+    /**
+     * @return the hit, miss and put counts of the cache of Users, by UUID and by
+     *         username
+     */
+    public CacheRegionStatistics getCacheStats() {
+        return userRepo.getCacheStats();
+    }
+
+    /**
+     * Publishes the hit, miss and put counts of the cache of Users, which are
+     * scraped from the actuator's prometheus endpoint
+     * 
+     * @param registry the registry to publish the metrics to
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cache.gets", this,
+                service -> service.getCacheCount(CacheRegionStatistics::getHitCount))
+                .tags("cache", User.CACHE_REGION, "result", "hit")
+                .description("The number of times a User was read from the cache")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", this,
+                service -> service.getCacheCount(CacheRegionStatistics::getMissCount))
+                .tags("cache", User.CACHE_REGION, "result", "miss")
+                .description("The number of times a User wasn't in the cache")
+                .register(registry);
+        FunctionCounter.builder("cache.puts", this,
+                service -> service.getCacheCount(CacheRegionStatistics::getPutCount))
+                .tags("cache", User.CACHE_REGION)
+                .description("The number of Users put in the cache")
+                .register(registry);
+    }
+
+    /**
+     * @param count the count to read from the statistics of the cache of Users
+     * @return the count, or 0 if there are no statistics, e.g. before the cache
+     *         region is created
+     */
+    private long getCacheCount(ToLongFunction<CacheRegionStatistics> count) {
+        CacheRegionStatistics stats = getCacheStats();
+        return stats != null ? count.applyAsLong(stats) : 0;
+    }
+
     public ProfileDTO getProfile(String username) {
         User user = findByUsername(username);
         UUID id = user.getId();
@@ -78,6 +127,7 @@ public class UserService {
             }
         }
 
+        // a new username replaces the cached lookup of the old one on commit
         userRepo.update(user);
     }
 }
@@ -0,0 +1,89 @@
+package com.jacob.backend.service;
+
+import java.util.function.Supplier;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Bounded, concurrent cache of the valid moves of one color in a position,
+ * stored as packed moves. Entries are keyed by the Zobrist hash of the
+ * position, which covers its castling rights and en passant square, so that
+ * positions reached by different games share an entry
+ */
+public class ValidMovesCache {
+
+    /**
+     * the underlying cache, evicting with W-TinyLFU once it is full
+     */
+    private final Cache<Key, int[]> cache;
+
+    /**
+     * Creates a new, empty ValidMovesCache
+     *
+     * @param maximumSize the most positions to keep
+     */
+    public ValidMovesCache(long maximumSize) {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Gets the valid moves for the given position and color, generating and
+     * caching them if they aren't cached yet
+     *
+     * @param positionHash       the Zobrist hash of the position
+     * @param playerColor        the color of the player whose moves these are
+     * @param includeAnnotations if the moves are annotated
+     * @param generator          generates the moves on a miss
+     * @return the packed valid moves, which must not be modified
+     */
+    public int[] get(long positionHash, int playerColor, boolean includeAnnotations, Supplier<int[]> generator) {
+
+        int context = playerColor | (includeAnnotations ? 2 : 0);
+
+        return cache.get(new Key(positionHash, context), key -> generator.get());
+
+    }
+
+    /**
+     * @return the hit, miss, and eviction counts of the cache
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * Publishes the hit, miss, eviction and size metrics of the cache
+     *
+     * @param registry the registry to publish them to
+     * @param name     the name of the cache, tagged on each metric
+     */
+    public void bindTo(MeterRegistry registry, String name) {
+        new CaffeineCacheMetrics<>(cache, name, Tags.empty()).bindTo(registry);
+    }
+
+    /**
+     * @return the number of positions cached
+     */
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * Identifies a set of valid moves
+     *
+     * @param positionHash the Zobrist hash of the position
+     * @param context      the player color and annotations packed together
+     */
+    private record Key(long positionHash, int context) {
+    }
+
+}
@@ -0,0 +1,43 @@
+-- The schema as it was created by 'spring.jpa.hibernate.ddl-auto=update'.
+-- Databases created that way already have these tables, so nothing is
+-- created twice.
+
+CREATE TABLE IF NOT EXISTS users (
+    id uuid NOT NULL,
+    username varchar(255),
+    email varchar(255),
+    password_hash varchar(255),
+    password_salt varchar(255),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS sessions (
+    id uuid NOT NULL,
+    username varchar(255),
+    current_game_id uuid,
+    online_status smallint CHECK (online_status BETWEEN 0 AND 2),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS friends (
+    id uuid NOT NULL,
+    useraid uuid,
+    userbid uuid,
+    pending boolean NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS games (
+    id uuid NOT NULL,
+    fen varchar(255),
+    moves varchar(1337),
+    move_times varchar(1337),
+    time_control varchar(255),
+    white_player_id uuid,
+    black_player_id uuid,
+    white_player_username varchar(255),
+    black_player_username varchar(255),
+    result varchar(255),
+    date timestamp(6),
+    PRIMARY KEY (id)
+);
@@ -0,0 +1,26 @@
+-- The columns, tables and indexes added to the schema while it was still
+-- created by 'spring.jpa.hibernate.ddl-auto=update'. Databases created that
+-- way may already have some of them, depending on when they were last
+-- updated, so only the missing ones are added.
+
+-- The state of the Position of each game, kept so it needn't be worked out
+-- from the moves, and the encoded moves of finished games.
+ALTER TABLE games ADD COLUMN IF NOT EXISTS zobrist_key bigint;
+ALTER TABLE games ADD COLUMN IF NOT EXISTS castling_rights integer;
+ALTER TABLE games ADD COLUMN IF NOT EXISTS en_passant_square integer;
+ALTER TABLE games ADD COLUMN IF NOT EXISTS halfmove_clock integer;
+ALTER TABLE games ADD COLUMN IF NOT EXISTS ply_count integer;
+ALTER TABLE games ADD COLUMN IF NOT EXISTS move_data bytea;
+
+-- Each move of a game, appended as it is played.
+CREATE TABLE IF NOT EXISTS game_moves (
+    game_id uuid NOT NULL,
+    ply integer NOT NULL,
+    move integer NOT NULL,
+    clock_millis integer NOT NULL,
+    PRIMARY KEY (game_id, ply)
+);
+
+-- Each player's games, newest first, for paging through them.
+CREATE INDEX IF NOT EXISTS games_white_player_date_idx ON games (white_player_id, date, id);
+CREATE INDEX IF NOT EXISTS games_black_player_date_idx ON games (black_player_id, date, id);
@@ -0,0 +1,33 @@
+-- Game dates are instants. Existing values were written in the server's time
+-- zone, which is the time zone they are read in here.
+ALTER TABLE games ALTER COLUMN date TYPE timestamptz;
+
+-- Game results are stored as 0 = '*', 1 = '1-0', 2 = '0-1', 3 = '1/2-1/2'.
+-- See GameResultConverter. Any other result would become NULL, so the
+-- migration fails on them instead, for them to be fixed by hand first.
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM games
+               WHERE result IS NOT NULL AND result NOT IN ('*', '1-0', '0-1', '1/2-1/2')) THEN
+        RAISE EXCEPTION 'games has results other than ''*'', ''1-0'', ''0-1'' and ''1/2-1/2''';
+    END IF;
+END
+$$;
+ALTER TABLE games ALTER COLUMN result TYPE smallint USING CASE result
+    WHEN '*' THEN 0
+    WHEN '1-0' THEN 1
+    WHEN '0-1' THEN 2
+    WHEN '1/2-1/2' THEN 3
+END;
+ALTER TABLE games ADD CONSTRAINT games_result_check CHECK (result BETWEEN 0 AND 3);
+
+-- Games in progress are a small part of the table, so they get their own
+-- indexes.
+CREATE INDEX games_active_white_player_idx ON games (white_player_id) WHERE result = 0;
+CREATE INDEX games_active_black_player_idx ON games (black_player_id) WHERE result = 0;
+
+-- Usernames identify users and their sessions. A user could end up with more
+-- than one session before sessions were upserted, so keep one of them.
+DELETE FROM sessions a USING sessions b WHERE a.username = b.username AND a.id < b.id;
+CREATE UNIQUE INDEX IF NOT EXISTS users_username_key ON users (username);
+CREATE UNIQUE INDEX IF NOT EXISTS sessions_username_key ON sessions (username);
@@ -0,0 +1,20 @@
+-- When each game ended. Games that ended before this column was added are
+-- taken to have ended on the day they were created.
+ALTER TABLE games ADD COLUMN finished_at timestamptz;
+UPDATE games SET finished_at = date WHERE result <> 0;
+
+-- Finished games waiting to be archived, oldest first.
+CREATE INDEX games_finished_at_idx ON games (finished_at) WHERE finished_at IS NOT NULL;
+
+-- Games that ended long enough ago, moved out of games by GameArchiver. It has
+-- the columns of games, which are listed in GameRepository when rows are
+-- moved. Columns added to games must be added here and there too. Each month
+-- of date is a partition, made before its first game is moved, e.g.
+-- games_archive_2024_01. Games without a date have no partition, so are kept.
+CREATE TABLE games_archive (
+    LIKE games INCLUDING DEFAULTS INCLUDING CONSTRAINTS,
+    PRIMARY KEY (id, date)
+) PARTITION BY RANGE (date);
+
+CREATE INDEX games_archive_white_player_date_idx ON games_archive (white_player_id, date, id);
+CREATE INDEX games_archive_black_player_date_idx ON games_archive (black_player_id, date, id);
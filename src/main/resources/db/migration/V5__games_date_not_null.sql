@@ -0,0 +1,10 @@
+-- Game dates are set when a Game is created, and Games are paged by them, so
+-- every Game needs one. Games without one take the time in their UUID, for
+-- version 7 UUIDs, or otherwise the time of this migration.
+UPDATE games SET date = CASE
+    WHEN substring(id::text, 15, 1) = '7'
+        THEN to_timestamp(('x' || lpad(replace(left(id::text, 13), '-', ''), 16, '0'))::bit(64)::bigint / 1000.0)
+    ELSE now()
+END
+WHERE date IS NULL;
+ALTER TABLE games ALTER COLUMN date SET NOT NULL;
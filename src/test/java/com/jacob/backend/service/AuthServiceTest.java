@@ -1,5 +1,108 @@
 package com.jacob.backend.service;
 
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.jacob.backend.data.DTO.CredentialsDTO;
+import com.jacob.backend.data.DTO.UserCredentialsDTO;
+import com.jacob.backend.repository.interfaces.UserRepositoryInterface;
+import com.jacob.backend.responses.exceptions.InvalidCredentialsException;
+
+@Tag("UnitTest")
+@ExtendWith(MockitoExtension.class)
 public class AuthServiceTest {
 
+    @Mock
+    private UserRepositoryInterface mockUserRepo;
+
+    @Mock
+    private SessionService mockSessionService;
+
+    @InjectMocks
+    private AuthService service;
+
+    /**
+     * ensure that when {@link AuthService#login(CredentialsDTO)} is called with
+     * the right password, then the credentials are read once and a Session is
+     * created
+     */
+    @Test
+    public void login_whenInvokedWithValidCredentials_readsCredentialsAndCreatesSession() {
+
+        // MOCK
+        String hash = service.getPasswordHash("password" + "salt");
+        when(mockUserRepo.getCredentials(anyString()))
+                .thenReturn(new UserCredentialsDTO(UUID.randomUUID(), hash, "salt"));
+        when(mockSessionService.create(anyString())).thenReturn("sessionId");
+
+        // ACT
+        CredentialsDTO cred = new CredentialsDTO();
+        cred.setUsername("username");
+        cred.setPassword("password");
+
+        String sessionId = service.login(cred);
+
+        // ASSERT
+        verify(mockUserRepo, times(1)).getCredentials("username");
+        verify(mockUserRepo, times(0)).userExists(anyString());
+        verify(mockSessionService, times(1)).create("username");
+        assertEquals("sessionId", sessionId);
+
+    }
+
+    /**
+     * ensure that when {@link AuthService#login(CredentialsDTO)} is called with a
+     * username that doesn't exist, then an exception is thrown and no Session is
+     * created
+     */
+    @Test
+    public void login_whenInvokedWithUnknownUsername_throwsException() {
+
+        // MOCK
+        when(mockUserRepo.getCredentials(anyString())).thenReturn(null);
+
+        // ACT
+        CredentialsDTO cred = new CredentialsDTO();
+        cred.setUsername("username");
+        cred.setPassword("password");
+
+        // ASSERT
+        assertThrows(InvalidCredentialsException.class, () -> service.login(cred));
+        verify(mockSessionService, times(0)).create(anyString());
+
+    }
+
+    /**
+     * ensure that when {@link AuthService#login(CredentialsDTO)} is called with
+     * the wrong password, then an exception is thrown and no Session is created
+     */
+    @Test
+    public void login_whenInvokedWithWrongPassword_throwsException() {
+
+        // MOCK
+        String hash = service.getPasswordHash("password" + "salt");
+        when(mockUserRepo.getCredentials(anyString()))
+                .thenReturn(new UserCredentialsDTO(UUID.randomUUID(), hash, "salt"));
+
+        // ACT
+        CredentialsDTO cred = new CredentialsDTO();
+        cred.setUsername("username");
+        cred.setPassword("wrong");
+
+        // ASSERT
+        assertThrows(InvalidCredentialsException.class, () -> service.login(cred));
+        verify(mockSessionService, times(0)).create(anyString());
+
+    }
+
 }
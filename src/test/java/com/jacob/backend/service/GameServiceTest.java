@@ -9,19 +9,32 @@ import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.jacob.backend.data.DTO.GamePageDTO;
+import com.jacob.backend.data.DTO.GameSummaryDTO;
 import com.jacob.backend.data.DTO.MoveDTO;
+import com.jacob.backend.data.DTO.PerftDTO;
 import com.jacob.backend.data.Model.Game;
+import com.jacob.backend.data.Model.GameMove;
 import com.jacob.backend.data.Model.User;
+import com.jacob.backend.engine.IntMoveList;
+import com.jacob.backend.engine.MoveListCodec;
+import com.jacob.backend.repository.interfaces.GameMoveRepositoryInterface;
 import com.jacob.backend.repository.interfaces.GameRepositoryInterface;
 import com.jacob.backend.responses.exceptions.MissingFieldException;
 import com.jacob.backend.responses.exceptions.NotFoundException;
 import com.jacob.backend.responses.exceptions.UnauthorizedException;
 
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -33,6 +46,9 @@ public class GameServiceTest {
     @Mock
     private GameRepositoryInterface mockGameRepo;
 
+    @Mock
+    private GameMoveRepositoryInterface mockGameMoveRepo;
+
     @Mock
     private UserService mockUserService;
 
@@ -60,52 +76,196 @@ public class GameServiceTest {
     }
 
     @Test
-    public void findAllByUserId_whenInvokedWithValidArgs_getsAllGamesByUserId() {
+    public void findById_whenGameHasMoves_readsMovesInOrder() {
+
+        // MOCK
+        UUID gameId = UUID.randomUUID();
+        Game stored = new Game();
+        stored.setFEN("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR");
+        stored.setMoves("");
+        stored.setMoveTimes("");
+        MoveDTO first = MoveDTO.fromString("Pe2e4");
+        MoveDTO second = MoveDTO.fromString("pe7e5");
+        List<GameMove> moves = List.of(
+                new GameMove(gameId, 0, service.toPackedMove(service.toPosition(stored), first), 100),
+                new GameMove(gameId, 1, service.toPackedMove(service.toPosition(stored), second), 250));
+        when(mockGameRepo.getById(gameId)).thenReturn(stored);
+        when(mockGameMoveRepo.getAllByGameId(gameId)).thenReturn(moves);
+
+        // ACT
+        Game game = service.findById(gameId);
+
+        // ASSERT
+        verify(mockGameMoveRepo, times(1)).getAllByGameId(gameId);
+        assertEquals("Pe2e4 pe7e5", game.getMoves());
+        assertEquals("100 250", game.getMoveTimes());
+
+    }
+
+    @Test
+    public void findById_whenMovesAreAheadOfGame_replaysThem() {
 
         // MOCK
-        when(mockGameRepo.getAllByUserId(any(UUID.class))).thenReturn(new ArrayList<Game>());
+        doNothing().when(mockGameRepo).updateAll(anyList());
+        UUID gameId = UUID.randomUUID();
+        Game start = new Game();
+        start.setFEN("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR");
+        Game stored = new Game();
+        stored.setFEN("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR");
+        stored.setPlyCount(1);
+        stored.setMoves("");
+        stored.setMoveTimes("");
+        List<GameMove> moves = List.of(
+                new GameMove(gameId, 0, service.toPackedMove(service.toPosition(start), MoveDTO.fromString("Pe2e4")),
+                        100),
+                new GameMove(gameId, 1, service.toPackedMove(service.toPosition(start), MoveDTO.fromString("pe7e5")),
+                        250));
+        when(mockGameRepo.getById(gameId)).thenReturn(stored);
+        when(mockGameMoveRepo.getAllByGameId(gameId)).thenReturn(moves);
 
         // ACT
-        List<Game> games = service.findAllByUserId(UUID.randomUUID());
+        Game game = service.findById(gameId);
+        service.flushGameUpdates();
 
         // ASSERT
-        verify(mockGameRepo, times(1)).getAllByUserId(any(UUID.class));
-        assertEquals(0, games.size());
+        assertEquals("rnbqkbnr/pppp1ppp/8/4p3/4P3/8/PPPP1PPP/RNBQKBNR", game.getFEN());
+        assertEquals(2, game.getPlyCount());
+        assertEquals("Pe2e4 pe7e5", game.getMoves());
+        verify(mockGameRepo, times(1)).updateAll(argThat((games) -> games.size() == 1
+                && games.get(0).getPlyCount() == 2
+                && games.get(0).getFEN().equals(game.getFEN())));
 
     }
 
     @Test
-    public void findAllByUsername_whenInvokedWithValidArgs_getsAllGamesByUsername() {
+    public void findById_whenGameHasFinished_decodesMoves() {
+
+        // MOCK
+        UUID gameId = UUID.randomUUID();
+        Game stored = new Game();
+        stored.setFEN("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR");
+        stored.setMoves("");
+        stored.setMoveTimes("");
+        IntMoveList moves = new IntMoveList();
+        moves.add(service.toPackedMove(service.toPosition(stored), MoveDTO.fromString("Pe2e4")));
+        moves.add(service.toPackedMove(service.toPosition(stored), MoveDTO.fromString("pe7e5")));
+        stored.setMoveData(MoveListCodec.encode(moves, new int[] { 1000, 250 }));
+        when(mockGameRepo.getById(gameId)).thenReturn(stored);
+
+        // ACT
+        Game game = service.findById(gameId);
+
+        // ASSERT
+        verify(mockGameMoveRepo, never()).getAllByGameId(any(UUID.class));
+        assertEquals("Pe2e4 pe7e5", game.getMoves());
+        assertEquals("1000 250", game.getMoveTimes());
+
+    }
+
+    @Test
+    public void findPageByUsername_whenMoreGamesThanLimit_returnsCursorOfNextPage() {
 
         // MOCK
         User user = new User();
         user.setId(UUID.randomUUID());
+        List<GameSummaryDTO> games = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            games.add(new GameSummaryDTO(UUID.randomUUID(), "whitePlayer", "blackPlayer", "*", "10/5",
+                    new Date(3_000 - i * 1_000), 0));
+        }
+        when(mockUserService.findByUsername(anyString())).thenReturn(user);
+        when(mockGameRepo.getPageByUserId(eq(user.getId()), isNull(), isNull(), eq(3))).thenReturn(games);
+        when(mockGameRepo.getPageByUserId(eq(user.getId()), eq(new Date(2_000)),
+                eq(games.get(1).getId()), eq(3))).thenReturn(games.subList(2, 3));
+
+        // ACT
+        GamePageDTO first = service.findPageByUsername("username", Optional.empty(), 2);
+        GamePageDTO second = service.findPageByUsername("username", Optional.of(first.getNextCursor()), 2);
+
+        // ASSERT
+        assertEquals(2, first.getGames().size());
+        assertNotNull(first.getNextCursor());
+        assertEquals(1, second.getGames().size());
+        assertEquals(games.get(2).getId(), second.getGames().get(0).getId());
+        assertNull(second.getNextCursor());
+
+    }
+
+    @Test
+    public void findPageByUsername_whenInvokedWithInvalidCursor_throwsException() {
+
+        // MOCK
+        when(mockUserService.findByUsername(anyString())).thenReturn(new User());
+
+        // ACT
+        Exception e = assertThrows(IllegalArgumentException.class,
+                () -> service.findPageByUsername("username", Optional.of("not a cursor"), 10));
+
+        // ASSERT
+        verify(mockGameRepo, never()).getPageByUserId(any(), any(), any(), anyInt());
+        assertEquals("Invalid cursor", e.getMessage());
+
+    }
+
+    @Test
+    public void findActiveByUsername_whenInvokedWithValidArgs_getsActiveGamesByUserId() {
 
+        // MOCK
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        List<GameSummaryDTO> games = List.of(new GameSummaryDTO(UUID.randomUUID(), "whitePlayer", "blackPlayer",
+                "*", "10/5", new Date(), 0));
         when(mockUserService.findByUsername(anyString())).thenReturn(user);
-        when(mockGameRepo.getAllByUserId(any(UUID.class))).thenReturn(new ArrayList<Game>());
+        when(mockGameRepo.getActiveByUserId(any(UUID.class))).thenReturn(games);
 
         // ACT
-        List<Game> games = service.findAllByUsername("username");
+        List<GameSummaryDTO> activeGames = service.findActiveByUsername("username");
 
         // ASSERT
-        verify(mockUserService, times(1)).findByUsername("username");
-        verify(mockGameRepo, times(1)).getAllByUserId(any(UUID.class));
-        assertEquals(0, games.size());
+        verify(mockGameRepo, times(1)).getActiveByUserId(user.getId());
+        assertEquals(games, activeGames);
 
     }
 
     @Test
-    public void findAllByUsername_whenInvokedWithUnregisteredUsername_throwsException() {
+    public void archiveFinishedGames_whenBatchIsFull_archivesUntilBatchIsNotFull() {
 
         // MOCK
-        when(mockUserService.findByUsername(anyString())).thenReturn(null);
+        when(mockGameRepo.archiveFinished(any(Date.class), anyInt())).thenReturn(500, 20);
 
         // ACT
-        
+        int archived = service.archiveFinishedGames();
+
         // ASSERT
-        assertThrows(NotFoundException.class, () -> {
-            service.findAllByUsername("username");
-        });
+        ArgumentCaptor<Date> finishedBefore = ArgumentCaptor.forClass(Date.class);
+        InOrder inOrder = inOrder(mockGameRepo);
+        inOrder.verify(mockGameRepo, times(1)).createArchivePartitions(finishedBefore.capture());
+        inOrder.verify(mockGameRepo, times(2)).archiveFinished(eq(finishedBefore.getValue()), eq(500));
+        assertEquals(520, archived);
+
+    }
+
+    @Test
+    public void bindTo_whenValidMovesAreRequestedTwice_publishesCacheMissThenHit() {
+
+        // MOCK
+        MeterRegistry registry = new SimpleMeterRegistry();
+        service.bindTo(registry);
+
+        // ACT
+        String fen = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+        service.getValidMoves(fen, Optional.empty(), Optional.empty(), Optional.empty());
+        double missesAfterFirst = registry.get("cache.gets").tags("cache", "validMoves", "result", "miss")
+                .functionCounter().count();
+        service.getValidMoves(fen, Optional.empty(), Optional.empty(), Optional.empty());
+
+        // ASSERT
+        assertTrue(missesAfterFirst > 0);
+        assertEquals(missesAfterFirst, registry.get("cache.gets").tags("cache", "validMoves", "result", "miss")
+                .functionCounter().count());
+        assertEquals(missesAfterFirst, registry.get("cache.gets").tags("cache", "validMoves", "result", "hit")
+                .functionCounter().count());
+        assertEquals(0, registry.get("games.live").gauge().value());
 
     }
 
@@ -135,6 +295,31 @@ public class GameServiceTest {
 
     }
 
+    @Test
+    public void create_whenInvokedWithDate_setsDateOfCreation() {
+
+        // MOCK
+        when(mockUserService.findByUsername(anyString())).thenReturn(new User());
+        doAnswer((i) -> {
+            ((Game) i.getArgument(0)).setId(UUID.randomUUID());
+            return null;
+        }).when(mockGameRepo).save(any(Game.class));
+
+        // ACT
+        String username = "whiteplayer";
+        Game game = new Game();
+        game.setWhitePlayerUsername(username);
+        game.setBlackPlayerUsername("blackplayer");
+        game.setDate(new Date(0));
+
+        Date before = new Date();
+        service.create(username, game);
+
+        // ASSERT
+        verify(mockGameRepo, times(1)).save(argThat((saved) -> !saved.getDate().before(before)));
+
+    }
+
     @Test
     public void create_whenInvokedwithGameMissingField_throwsException() {
 
@@ -360,7 +545,7 @@ public class GameServiceTest {
         public void doMove_whenInvokedWithValidArgs_updatesGame() {
 
             // MOCK
-            doNothing().when(mockGameRepo).update(any(Game.class));
+            doNothing().when(mockGameRepo).updateAll(anyList());
 
             // ACT
             MoveDTO move = new MoveDTO();
@@ -371,11 +556,17 @@ public class GameServiceTest {
             String id = UUID.randomUUID().toString();
 
             service.doMove("whitePlayer", id, move);
+            service.flushGameUpdates();
 
             // ASSERT
             verify(mockSessionService, times(1)).isValidUUID(id);
             verify(mockGameRepo, times(1)).getById(UUID.fromString(id));
-            verify(mockGameRepo, times(1)).update(game);
+            verify(mockGameRepo, never()).update(any(Game.class));
+            verify(mockGameRepo, times(1)).updateAll(anyList());
+            verify(mockGameMoveRepo, times(1)).saveAll(argThat((moves) -> moves.size() == 1
+                    && moves.get(0).getPly() == 0
+                    && moves.get(0).getClockMillis() == 100
+                    && MoveDTO.fromMove(moves.get(0).getMove()).toString().equals("Pa2a4")));
             assertEquals("rnbqkbnr/pppppppp/8/8/P7/8/1PPPPPPP/RNBQKBNR", game.getFEN());
             assertEquals("Pa2a4", game.getMoves());
             assertEquals("100", game.getMoveTimes());
@@ -401,6 +592,196 @@ public class GameServiceTest {
 
         }
 
+        @Test
+        public void doMove_whenInvokedTwice_readsGameOnce() {
+
+            // MOCK
+            doNothing().when(mockGameRepo).updateAll(anyList());
+
+            // ACT
+            String id = UUID.randomUUID().toString();
+
+            MoveDTO whiteMove = new MoveDTO();
+            whiteMove.setPiece("P");
+            whiteMove.setStartSquare(new int[] { 4, 6 });
+            whiteMove.setDestSquare(new int[] { 4, 4 });
+
+            MoveDTO blackMove = new MoveDTO();
+            blackMove.setPiece("p");
+            blackMove.setStartSquare(new int[] { 4, 1 });
+            blackMove.setDestSquare(new int[] { 4, 3 });
+
+            service.doMove("whitePlayer", id, whiteMove);
+            Game result = service.doMove("blackPlayer", id, blackMove);
+            service.flushGameUpdates();
+
+            // ASSERT
+            verify(mockGameRepo, times(1)).getById(UUID.fromString(id));
+            verify(mockGameRepo, never()).update(any(Game.class));
+            verify(mockGameRepo, atLeastOnce()).updateAll(argThat((games) -> {
+                return games.get(0).getMoves().equals("Pe2e4 pe7e5");
+            }));
+            Game found = service.findById(UUID.fromString(id));
+            assertNotSame(game, result);
+            assertNotSame(game, found);
+            assertEquals("Pe2e4 pe7e5", game.getMoves());
+            assertEquals("Pe2e4 pe7e5", result.getMoves());
+            assertEquals(game.getFEN(), found.getFEN());
+            assertEquals("Pe2e4 pe7e5", found.getMoves());
+            assertEquals(1, service.getLiveGameCount());
+
+        }
+
+        @Test
+        public void flushGameUpdates_whenWriteFails_writesGameOnRetry() {
+
+            // MOCK
+            doThrow(new RuntimeException("write failed")).doThrow(new RuntimeException("write failed"))
+                    .doNothing().when(mockGameRepo).updateAll(anyList());
+
+            // ACT
+            String id = UUID.randomUUID().toString();
+
+            MoveDTO move = new MoveDTO();
+            move.setPiece("P");
+            move.setStartSquare(new int[] { 4, 6 });
+            move.setDestSquare(new int[] { 4, 4 });
+
+            service.doMove("whitePlayer", id, move);
+            service.flushGameUpdates();
+
+            // ASSERT
+            verify(mockGameMoveRepo, times(1)).saveAll(anyList());
+            verify(mockGameRepo, timeout(10_000).times(3)).updateAll(argThat((games) -> games.size() == 1
+                    && games.get(0).getMoves().equals("Pe2e4")));
+            assertEquals("Pe2e4", service.findById(UUID.fromString(id)).getMoves());
+
+        }
+
+        @Test
+        public void flushGameUpdates_whenMovesFail_holdsBackGameUntilTheyAreWritten() {
+
+            // MOCK
+            doThrow(new RuntimeException("insert failed")).doNothing().when(mockGameMoveRepo).saveAll(anyList());
+            doNothing().when(mockGameRepo).updateAll(anyList());
+
+            // ACT
+            String id = UUID.randomUUID().toString();
+
+            MoveDTO move = new MoveDTO();
+            move.setPiece("P");
+            move.setStartSquare(new int[] { 4, 6 });
+            move.setDestSquare(new int[] { 4, 4 });
+
+            service.doMove("whitePlayer", id, move);
+            service.flushGameUpdates();
+
+            // ASSERT
+            verify(mockGameRepo, never()).updateAll(anyList());
+            verify(mockGameRepo, timeout(10_000).times(1)).updateAll(argThat((games) -> games.size() == 1
+                    && games.get(0).getPlyCount() == 1));
+            InOrder inOrder = inOrder(mockGameMoveRepo, mockGameRepo);
+            inOrder.verify(mockGameMoveRepo, times(2)).saveAll(argThat((moves) -> moves.size() == 1
+                    && moves.get(0).getPly() == 0));
+            inOrder.verify(mockGameRepo, times(1)).updateAll(anyList());
+
+        }
+
+        @Test
+        public void resign_whenGameIsLive_endsLiveGame() {
+
+            // MOCK
+            doNothing().when(mockGameRepo).updateAll(anyList());
+
+            // ACT
+            String id = UUID.randomUUID().toString();
+
+            MoveDTO move = new MoveDTO();
+            move.setPiece("P");
+            move.setStartSquare(new int[] { 4, 6 });
+            move.setDestSquare(new int[] { 4, 4 });
+
+            service.doMove("whitePlayer", id, move);
+            service.resign("blackPlayer", UUID.fromString(id));
+
+            // ASSERT
+            verify(mockGameRepo, atLeastOnce()).updateAll(argThat((games) -> {
+                return games.get(0).getResult().equals("1-0");
+            }));
+            assertEquals("1-0", game.getResult());
+            assertNotNull(game.getFinishedAt());
+            assertEquals(0, service.getLiveGameCount());
+
+        }
+
+        @Test
+        public void doMove_whenGameHasEnded_throwsException() {
+
+            // MOCK
+            game.setResult("1-0");
+
+            // ACT
+            MoveDTO move = new MoveDTO();
+            move.setPiece("P");
+            move.setStartSquare(new int[] { 4, 6 });
+            move.setDestSquare(new int[] { 4, 4 });
+
+            RuntimeException e = assertThrows(RuntimeException.class, () -> {
+                service.doMove("whitePlayer", UUID.randomUUID().toString(), move);
+            });
+
+            // ASSERT
+            assertTrue(e.getMessage().contains("Cannot move in a game that has already ended"));
+            service.flushGameUpdates();
+            verify(mockGameRepo, never()).updateAll(anyList());
+            assertEquals(0, service.getLiveGameCount());
+
+        }
+
+        @Test
+        public void doMove_whenInvokedOutOfTurn_throwsException() {
+
+            // MOCK
+
+            // ACT
+            MoveDTO move = new MoveDTO();
+            move.setPiece("p");
+            move.setStartSquare(new int[] { 4, 1 });
+            move.setDestSquare(new int[] { 4, 3 });
+
+            RuntimeException e = assertThrows(RuntimeException.class, () -> {
+                service.doMove("blackPlayer", UUID.randomUUID().toString(), move);
+            });
+
+            // ASSERT
+            assertTrue(e.getMessage().contains("Attempting to perform an Invalid Move"));
+            service.flushGameUpdates();
+            verify(mockGameRepo, never()).updateAll(anyList());
+
+        }
+
+        @Test
+        public void doMove_whenInvokedWithOpponentsPiece_throwsException() {
+
+            // MOCK
+
+            // ACT
+            MoveDTO move = new MoveDTO();
+            move.setPiece("p");
+            move.setStartSquare(new int[] { 4, 1 });
+            move.setDestSquare(new int[] { 4, 3 });
+
+            RuntimeException e = assertThrows(RuntimeException.class, () -> {
+                service.doMove("whitePlayer", UUID.randomUUID().toString(), move);
+            });
+
+            // ASSERT
+            assertTrue(e.getMessage().contains("Attempting to perform an Invalid Move"));
+            service.flushGameUpdates();
+            verify(mockGameRepo, never()).updateAll(anyList());
+
+        }
+
         @Test
         public void getValidMoves_whenInvokedWithValidArgs_returnsValidMoves() {
 
@@ -522,7 +903,7 @@ public class GameServiceTest {
             // MOCK
             when(mockSessionService.isValidUUID(anyString())).thenReturn(true);
             when(mockGameRepo.getById(any(UUID.class))).thenReturn(game);
-            doNothing().when(mockGameRepo).update(any(Game.class));
+            doNothing().when(mockGameRepo).updateAll(anyList());
 
             // ACT
             MoveDTO move = new MoveDTO();
@@ -533,11 +914,13 @@ public class GameServiceTest {
             String id = UUID.randomUUID().toString();
 
             service.doMove("Kholmov", id, move);
+            service.flushGameUpdates();
 
             // ASSERT
             verify(mockSessionService, times(1)).isValidUUID(id);
             verify(mockGameRepo, times(1)).getById(UUID.fromString(id));
-            verify(mockGameRepo, times(1)).update(game);
+            verify(mockGameRepo, never()).update(any(Game.class));
+            verify(mockGameRepo, times(1)).updateAll(anyList());
             assertEquals("r1b2r1k/4qp1p/p1Nppb1Q/4nP2/1p2P3/2N5/PPP4P/2KR1BR1", game.getFEN());
             assertEquals("e4 c5 Nf3 Nf6 Nc3 d6 d4 cxd4 Nxd4 a6 " + //
                     "Bg5 e6 f4 Be7 Qf3 Qc7 O-O-O Nbd7 g4 b5 " + //
@@ -651,7 +1034,7 @@ public class GameServiceTest {
             // MOCK
             when(mockSessionService.isValidUUID(anyString())).thenReturn(true);
             when(mockGameRepo.getById(any(UUID.class))).thenReturn(game);
-            doNothing().when(mockGameRepo).update(any(Game.class));
+            doNothing().when(mockGameRepo).updateAll(anyList());
 
             // ACT
             MoveDTO move = new MoveDTO();
@@ -663,11 +1046,13 @@ public class GameServiceTest {
             String id = UUID.randomUUID().toString();
 
             service.doMove("Sanz", id, move);
+            service.flushGameUpdates();
 
             // ASSERT
             verify(mockSessionService, times(1)).isValidUUID(anyString());
             verify(mockGameRepo, times(1)).getById(UUID.fromString(id));
-            verify(mockGameRepo, times(1)).update(game);
+            verify(mockGameRepo, never()).update(any(Game.class));
+            verify(mockGameRepo, times(1)).updateAll(anyList());
             assertEquals("8/pR4pk/1b2p3/2p3p1/N1p5/7P/Pr4P1/6K1", game.getFEN());
             assertEquals("1. e4 e6 2. d3 d5 3. Nc3 Nf6 4. e5 Nfd7 5. f4 Bb4 6. Bd2 O-O " +
                             "7. Nf3 f6 8. d4 c5 9. Nb5 fxe5 10. dxe5 Rxf4 11. c3 Re4+ 12. Be2 Ba5 " +
@@ -776,7 +1161,7 @@ public class GameServiceTest {
         public void doMove_whenInvokedWithValidArgs_updatesGame() {
 
             // MOCK
-            doNothing().when(mockGameRepo).update(any(Game.class));
+            doNothing().when(mockGameRepo).updateAll(anyList());
 
             // ACT
             MoveDTO move = new MoveDTO();
@@ -789,11 +1174,13 @@ public class GameServiceTest {
             String id = UUID.randomUUID().toString();
 
             service.doMove("Lasker", id, move);
+            service.flushGameUpdates();
 
             // ASSERT
             verify(mockSessionService, times(1)).isValidUUID(anyString());
             verify(mockGameRepo, times(1)).getById(UUID.fromString(id));
-            verify(mockGameRepo, times(1)).update(game);
+            verify(mockGameRepo, never()).update(any(Game.class));
+            verify(mockGameRepo, times(1)).updateAll(anyList());
             assertEquals("rn3rk1/pbppq1pQ/1p2pb2/4N3/3PN3/3B4/PPP2PPP/R3K2R", game.getFEN());
             assertEquals("d4 e6 Nf3 f5 Nc3 Nf6 Bg5 Be7 Bxf6 Bxf6 " +
                     "e4 fxe4 Nxe4 b6 Ne5 O-O Bd3 Bb7 Qh5 Qe7 Qh5xh7+", game.getMoves());
@@ -839,7 +1226,7 @@ public class GameServiceTest {
 
             // ACT
             List<String> validMoves = service.getValidMoves("Lasker", UUID.randomUUID().toString(),
-                    Optional.ofNullable(null), Optional.ofNullable("w"));
+                    Optional.ofNullable(null), Optional.ofNullable("w"), true);
 
             // ASSERT
             assertEquals(3, validMoves.stream().filter((s) -> {
@@ -855,11 +1242,44 @@ public class GameServiceTest {
 
         }
 
+        @Test
+        public void doMove_whenMoveLeavesKingInCheck_throwsException() {
+
+            // MOCK
+            doNothing().when(mockGameRepo).updateAll(anyList());
+
+            // ACT
+            String id = UUID.randomUUID().toString();
+
+            MoveDTO check = new MoveDTO();
+            check.setPiece("Q");
+            check.setStartSquare(new int[] { 7, 3 });
+            check.setDestSquare(new int[] { 7, 1 });
+
+            service.doMove("Lasker", id, check);
+            service.flushGameUpdates();
+
+            MoveDTO move = new MoveDTO();
+            move.setPiece("p");
+            move.setStartSquare(new int[] { 0, 1 });
+            move.setDestSquare(new int[] { 0, 2 });
+
+            RuntimeException e = assertThrows(RuntimeException.class, () -> {
+                service.doMove("Thomas", id, move);
+            });
+
+            // ASSERT
+            assertTrue(e.getMessage().contains("Attempting to perform an Invalid Move"));
+            verify(mockGameRepo, never()).update(any(Game.class));
+            verify(mockGameRepo, times(1)).updateAll(anyList());
+
+        }
+
         @Test
         public void doMove_whenCalledSequentially_updatesGame() {
 
             // MOCK
-            doNothing().when(mockGameRepo).update(any(Game.class));
+            doNothing().when(mockGameRepo).updateAll(anyList());
 
             // ACT
             ArrayList<Integer> thomasValidMoves = new ArrayList<Integer>();
@@ -1026,8 +1446,12 @@ public class GameServiceTest {
 
             // ASSERT
             verify(mockSessionService, times(15)).isValidUUID(id);
-            verify(mockGameRepo, times(15)).getById(UUID.fromString(id));
-            verify(mockGameRepo, times(15)).update(game);
+            verify(mockGameRepo, times(1)).getById(UUID.fromString(id));
+            verify(mockGameRepo, never()).update(any(Game.class));
+            verify(mockGameRepo, atLeastOnce()).updateAll(argThat((games) -> {
+                return games.get(0).getResult().equals("1-0");
+            }));
+            assertEquals(0, service.getLiveGameCount());
             assertEquals(7, thomasValidMoves.size());
             assertEquals(6, thomasValidMoves.stream().filter((n) -> {
                 return n == 1;
@@ -1038,6 +1462,132 @@ public class GameServiceTest {
 
     }
 
+    @Nested
+    class Perft {
+
+        // Reference positions and node counts from the Chess Programming Wiki, kept
+        // to depths that run quickly
+
+        @Test
+        public void perft_whenInvokedOnStartingPosition_returnsKnownNodeCounts() {
+
+            // MOCK
+            String fen = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+            // ACT
+            // ASSERT
+            assertEquals(1, service.perft(fen, 0).getNodes());
+            assertEquals(20, service.perft(fen, 1).getNodes());
+            assertEquals(400, service.perft(fen, 2).getNodes());
+            assertEquals(8902, service.perft(fen, 3).getNodes());
+            assertEquals(197281, service.perft(fen, 4).getNodes());
+
+        }
+
+        @Test
+        public void perft_whenInvokedOnKiwipete_returnsKnownNodeCounts() {
+
+            // MOCK
+            String fen = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+            // ACT
+            // ASSERT
+            assertEquals(48, service.perft(fen, 1).getNodes());
+            assertEquals(2039, service.perft(fen, 2).getNodes());
+            assertEquals(97862, service.perft(fen, 3).getNodes());
+
+        }
+
+        @Test
+        public void perft_whenInvokedOnEnPassantEndgame_returnsKnownNodeCounts() {
+
+            // MOCK
+            String fen = "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1";
+
+            // ACT
+            // ASSERT
+            assertEquals(14, service.perft(fen, 1).getNodes());
+            assertEquals(191, service.perft(fen, 2).getNodes());
+            assertEquals(2812, service.perft(fen, 3).getNodes());
+            assertEquals(43238, service.perft(fen, 4).getNodes());
+
+        }
+
+        @Test
+        public void perft_whenInvokedOnPromotionPosition_returnsKnownNodeCounts() {
+
+            // MOCK
+            String fen = "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1";
+
+            // ACT
+            // ASSERT
+            assertEquals(6, service.perft(fen, 1).getNodes());
+            assertEquals(264, service.perft(fen, 2).getNodes());
+            assertEquals(9467, service.perft(fen, 3).getNodes());
+
+        }
+
+        @Test
+        public void perft_whenInvokedOnUnderpromotionPosition_returnsKnownNodeCounts() {
+
+            // MOCK
+            String fen = "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8";
+
+            // ACT
+            // ASSERT
+            assertEquals(44, service.perft(fen, 1).getNodes());
+            assertEquals(1486, service.perft(fen, 2).getNodes());
+            assertEquals(62379, service.perft(fen, 3).getNodes());
+
+        }
+
+        @Test
+        public void perft_whenInvokedOnMiddlegame_returnsKnownNodeCounts() {
+
+            // MOCK
+            String fen = "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10";
+
+            // ACT
+            // ASSERT
+            assertEquals(46, service.perft(fen, 1).getNodes());
+            assertEquals(2079, service.perft(fen, 2).getNodes());
+            assertEquals(89890, service.perft(fen, 3).getNodes());
+
+        }
+
+        @Test
+        public void perft_whenDivided_returnsNodeCountsByFirstMove() {
+
+            // MOCK
+            String fen = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+            // ACT
+            PerftDTO result = service.perft(fen, 3, true);
+
+            // ASSERT
+            assertEquals(8902, result.getNodes());
+            assertEquals(20, result.getDivide().size());
+            assertEquals(Long.valueOf(600), result.getDivide().get("Pe2e4"));
+            assertEquals(Long.valueOf(440), result.getDivide().get("Ng1f3"));
+            assertEquals(3, result.getDepth());
+            assertTrue(result.getNanoseconds() > 0);
+
+        }
+
+        @Test
+        public void perft_whenInvokedWithNegativeDepth_throwsIllegalArgumentException() {
+
+            // MOCK
+            String fen = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+            // ACT
+            // ASSERT
+            assertThrows(IllegalArgumentException.class, () -> service.perft(fen, -1));
+
+        }
+
+    }
+
     @Test
     public void isInCheck_whenPlayerIsInCheck_returnsTrue() {
 
@@ -1183,6 +1733,44 @@ public class GameServiceTest {
 
     }
 
+    @Test
+    public void getValidMoves_whenInvokedWithFullFen_returnsValidMoves() {
+
+        // MOCK
+        String fen = "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1";
+
+        // ACT
+        List<String> validMoves = service.getValidMoves(fen, Optional.ofNullable(null), Optional.ofNullable(null),
+                Optional.ofNullable("b"));
+
+        // ASSERT
+        assertEquals(20, validMoves.size());
+
+    }
+
+    @Test
+    public void getValidMoves_whenInvokedWithMalformedFen_throwsIllegalArgumentException() {
+
+        // MOCK
+        String[] fens = new String[] {
+                "",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP",
+                "rnbqkbnr/pppppppp/9/8/8/8/PPPPPPPP/RNBQKBNR",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNX",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR x KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq e3 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1 extra"
+        };
+
+        // ACT
+        // ASSERT
+        for (String fen : fens) {
+            assertThrows(IllegalArgumentException.class, () -> service.getValidMoves(fen,
+                    Optional.ofNullable(null), Optional.ofNullable(null), Optional.ofNullable(null)));
+        }
+
+    }
+
     @Test
     public void isSameColorPiece_whenInvokedOnSameColorPieces_returnsTrue() {
 
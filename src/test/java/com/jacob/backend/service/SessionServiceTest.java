@@ -51,27 +51,23 @@ public class SessionServiceTest {
 
     /**
      * ensure that {@link SessionService#create(Session) SessionService.create}
-     * deletes any existing Session and creates a new Session for the given username
+     * upserts the Session for the given username and returns its id
      */
     @Test
-    public void create_whenInvokedWithValidArgs_deletesCurrentSessionAndSavesNewSession() {
+    public void create_whenInvokedWithValidArgs_upsertsSessionByUsername() {
 
         // MOCK
-        doNothing().when(mockSessionRepo).deleteByUsername(anyString());
-
         UUID uuid = UUID.randomUUID();
 
-        doAnswer((i) -> {
-            ((Session) i.getArgument(0)).setId(uuid);
-            return null;
-        }).when(mockSessionRepo).save(any(Session.class));
+        when(mockSessionRepo.upsertByUsername(anyString())).thenReturn(uuid);
 
         // ACT
         String id = service.create("username");
 
         // ASSERT
-        verify(mockSessionRepo, times(1)).deleteByUsername("username");
-        verify(mockSessionRepo, times(1)).save(any(Session.class));
+        verify(mockSessionRepo, times(1)).upsertByUsername("username");
+        verify(mockSessionRepo, times(0)).deleteByUsername(anyString());
+        verify(mockSessionRepo, times(0)).save(any(Session.class));
         assertEquals(id, uuid.toString());
 
     }
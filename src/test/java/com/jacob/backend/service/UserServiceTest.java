@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
+import org.hibernate.stat.CacheRegionStatistics;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -23,6 +24,9 @@ import com.jacob.backend.repository.interfaces.UserRepositoryInterface;
 import com.jacob.backend.responses.exceptions.AlreadyFoundException;
 import com.jacob.backend.responses.exceptions.PasswordMismatchException;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 @Tag("UnitTest")
 @ExtendWith(MockitoExtension.class)
 public class UserServiceTest {
@@ -83,6 +87,53 @@ public class UserServiceTest {
 
     }
 
+    /**
+     * ensure that when {@link UserService#getCacheStats()} is called, then the
+     * statistics of the repo layer's cache are returned
+     */
+    @Test
+    public void getCacheStats_whenInvoked_getsCacheStatsFromRepo() {
+
+        // MOCK
+        CacheRegionStatistics stats = mock(CacheRegionStatistics.class);
+        when(mockUserRepo.getCacheStats()).thenReturn(stats);
+
+        // ACT
+        CacheRegionStatistics result = service.getCacheStats();
+
+        // ASSERT
+        verify(mockUserRepo, times(1)).getCacheStats();
+        assertSame(stats, result);
+
+    }
+
+    /**
+     * ensure that when {@link UserService#bindTo(MeterRegistry)} is called, then
+     * the hit, miss and put counts of the repo layer's cache are published
+     */
+    @Test
+    public void bindTo_whenInvoked_publishesCacheStats() {
+
+        // MOCK
+        CacheRegionStatistics stats = mock(CacheRegionStatistics.class);
+        when(stats.getHitCount()).thenReturn(3L);
+        when(stats.getMissCount()).thenReturn(2L);
+        when(stats.getPutCount()).thenReturn(1L);
+        when(mockUserRepo.getCacheStats()).thenReturn(stats);
+
+        // ACT
+        MeterRegistry registry = new SimpleMeterRegistry();
+        service.bindTo(registry);
+
+        // ASSERT
+        assertEquals(3, registry.get("cache.gets").tags("cache", "users", "result", "hit")
+                .functionCounter().count());
+        assertEquals(2, registry.get("cache.gets").tags("cache", "users", "result", "miss")
+                .functionCounter().count());
+        assertEquals(1, registry.get("cache.puts").tags("cache", "users").functionCounter().count());
+
+    }
+
     /**
      * ensure that when {@link UserService#getProfile(String)} is called, then
      * the correct methods are invoked in the repo layer